@@ -0,0 +1,309 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 検索・フィルター・一覧・圧縮の性能計測
+ * <p>
+ * 深さ・分岐数・ファイル数・サイズ分布を指定した合成のログツリーを生成し、各処理を個別に計測する。
+ * 計測毎にウォームアップ後、指定回数の実行時間の平均・標準偏差・最小と処理速度を出力する。
+ * 乱数のシードを固定するため、同じ引数では同じツリーになる。
+ * <pre>
+ * javac -encoding UTF-8 -cp commons-io.jar -d out src/*.java bench/GZipBenchmark.java
+ * java -cp out:commons-io.jar GZipBenchmark --depth=3 --fanOut=4 --files=50 --benchmark=scan,filter
+ * </pre>
+ * 計測値は同じマシン・同じ引数での比較にのみ使用すること。
+ */
+public class GZipBenchmark {
+    /** 引数の接頭辞 */
+    private static final String OPTION_PREFIX = "--";
+
+    /** 合成ツリーの拡張子 ※「log.数値」はローテーション済みのログ */
+    private static final String[] EXTENSIONS = {"log", "log.1", "log.2", "bak", "txt", "csv"};
+
+    /** 検索条件の拡張子 */
+    private static final List<String> TARGET_EXTENSIONS = Arrays.asList("log", "bak");
+
+    /** 計測結果を最適化で除去させないための値 */
+    private static volatile long sink;
+
+    private enum Option {
+        DIR("dir", "", "合成ツリーの作成先 ※存在する場合はそのまま使用する(デフォルト: 一時ディレクトリ)"),
+        DEPTH("depth", "3", "ディレクトリの深さ"),
+        FAN_OUT("fanOut", "4", "ディレクトリ毎のサブディレクトリ数"),
+        FILES("files", "50", "ディレクトリ毎のファイル数"),
+        MIN_SIZE("minSize", "256", "ファイルサイズの最小(バイト)"),
+        MAX_SIZE("maxSize", "262144", "ファイルサイズの最大(バイト) ※最小～最大を対数一様に分布"),
+        SEED("seed", "1", "乱数のシード"),
+        WARMUP("warmup", "2", "ウォームアップの回数"),
+        ITERATIONS("iterations", "5", "計測の回数"),
+        PARALLELISM("parallelism", String.valueOf(Runtime.getRuntime().availableProcessors()), "並列走査・圧縮のスレッド数"),
+        BENCHMARK("benchmark", "all", "計測する処理 ※カンマ区切り (scan / filter / table / zip / tar.gz / gz / all)");
+
+        private final String optionName;
+        private final String defaultValue;
+        private final String description;
+
+        Option(String optionName, String defaultValue, String description) {
+            this.optionName = optionName;
+            this.defaultValue = defaultValue;
+            this.description = description;
+        }
+
+        private static Option getByOptionName(String optionName) {
+            for (Option option : values()) {
+                if (option.optionName.equals(optionName)) {
+                    return option;
+                }
+            }
+            throw new GZipRuntimeException("不明な引数です。(" + OPTION_PREFIX + optionName + ")");
+        }
+    }
+
+    /** 1回分の計測処理 */
+    private interface Body {
+        /**
+         * @return 処理量(ファイル数・バイト数等) ※処理速度の算出用
+         * @throws IOException 入出力エラー
+         */
+        long run() throws IOException;
+    }
+
+    private final Map<Option, String> options;
+    private final PrintStream out;
+
+    private GZipBenchmark(Map<Option, String> options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<Option, String> options = new EnumMap<>(Option.class);
+        for (Option option : Option.values()) {
+            options.put(option, option.defaultValue);
+        }
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith(OPTION_PREFIX) || eq < 0) {
+                printUsage(System.err);
+                System.exit(2);
+            }
+            options.put(Option.getByOptionName(arg.substring(OPTION_PREFIX.length(), eq)), arg.substring(eq + 1));
+        }
+        new GZipBenchmark(options, System.out).execute();
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("使い方: java GZipBenchmark [" + OPTION_PREFIX + "名前=値 ...]");
+        for (Option option : Option.values()) {
+            out.println(String.format("  %-18s %s (デフォルト: %s)", OPTION_PREFIX + option.optionName + "=値", option.description, option.defaultValue));
+        }
+    }
+
+    private int getInt(Option option) {
+        return Integer.parseInt(options.get(option));
+    }
+
+    private void execute() throws IOException {
+        Path root = options.get(Option.DIR).isEmpty() ? Files.createTempDirectory("g-zip-bench") : Paths.get(options.get(Option.DIR));
+        if (Files.notExists(root) || FileScanner.countEntries(root) == 0) {
+            generate(root);
+        }
+        List<String> benchmarks = Arrays.asList(options.get(Option.BENCHMARK).split(Settings.SEPARATOR));
+        boolean all = benchmarks.contains("all");
+        int parallelism = getInt(Option.PARALLELISM);
+
+        // ファイル属性・検索結果は全ての計測で共通
+        ScanFilter filter = ScanFilter.create(TARGET_EXTENSIONS, DateLastModified.ONE_MONTH_AGO);
+        List<Path> paths = new ArrayList<>();
+        List<BasicFileAttributes> attrsList = new ArrayList<>();
+        List<ScannedFile> matched = new FileScanner(filter, new NullListener() {
+            @Override public void visited(Path path, BasicFileAttributes attrs) {
+                paths.add(path);
+                attrsList.add(attrs);
+            }
+        }).scan(root);
+        long matchedBytes = matched.stream().mapToLong(ScannedFile::getSize).sum();
+        out.println(String.format("ツリー: %s ファイル: %,d件 検索結果: %,d件 (%,d バイト)", root, paths.size(), matched.size(), matchedBytes));
+        out.println(String.format("%-22s %12s %10s %12s %16s", "処理", "平均(ms)", "標準偏差", "最小(ms)", "処理速度"));
+
+        if (all || benchmarks.contains("scan")) {
+            for (FileScanner.Mode mode : FileScanner.Mode.values()) {
+                Path indexDir = Files.createTempDirectory("g-zip-bench-index");
+                measure("scan " + mode, "件/s", () -> FileScanner.create(filter, new NullListener(), mode, parallelism, indexDir).scan(root).size());
+            }
+        }
+        if (all || benchmarks.contains("filter")) {
+            String[] fileNames = paths.stream().map(path -> path.getFileName().toString()).toArray(String[]::new);
+            measure("filter extension", "件/s", () -> {
+                long count = 0;
+                for (String fileName : fileNames) {
+                    count += filter.isMatchedExtension(fileName) ? 1 : 0;
+                }
+                sink += count;
+                return fileNames.length;
+            });
+            measure("filter test", "件/s", () -> {
+                long count = 0;
+                for (int i = 0; i < paths.size(); i++) {
+                    count += filter.test(paths.get(i), attrsList.get(i)) ? 1 : 0;
+                }
+                sink += count;
+                return paths.size();
+            });
+        }
+        if (all || benchmarks.contains("table")) {
+            measure("table model", "件/s", () -> {
+                FileTableModel model = new FileTableModel(matched, true);
+                sink += model.getSelectedSize();
+                return model.getRowCount();
+            });
+        }
+
+        List<Path> pathList = matched.stream().map(ScannedFile::getPath).collect(Collectors.toList());
+        for (OutputFormat format : new OutputFormat[]{OutputFormat.ZIP, OutputFormat.TAR_GZ}) {
+            if (all || benchmarks.contains(format.getFormatName())) {
+                Archiver archiver = Archiver.create(format, root + root.getFileSystem().getSeparator(),
+                        Archiver.DEFAULT_BUFFER_SIZE, parallelism, CompressionLevel.DEFAULT, 0, false, false, false, false);
+                measure(format.getFormatName(), "MB/s", () -> {
+                    Path archiveFile = Files.createTempFile("g-zip-bench", format.getExtension());
+                    try {
+                        archiver.archive(pathList, archiveFile, new CompressProgress(pathList.size(), matchedBytes));
+                    } finally {
+                        Files.deleteIfExists(archiveFile);
+                    }
+                    return matchedBytes;
+                });
+            }
+        }
+        if (all || benchmarks.contains(OutputFormat.GZIP.getFormatName())) {
+            GzipCompressor compressor = new GzipCompressor(Archiver.DEFAULT_BUFFER_SIZE, parallelism, CompressionLevel.DEFAULT);
+            measure(OutputFormat.GZIP.getFormatName(), "MB/s", () -> {
+                List<Path> gzList = compressor.compress(pathList, false, new CompressProgress(pathList.size(), matchedBytes));
+                for (Path gzPath : gzList) {
+                    Files.delete(gzPath);
+                }
+                return matchedBytes;
+            });
+        }
+    }
+
+    /**
+     * 1つの処理の計測
+     *
+     * @param name 処理名
+     * @param unit 処理速度の単位(件/s、MB/s)
+     * @param body 計測処理
+     * @throws IOException 入出力エラー
+     */
+    private void measure(String name, String unit, Body body) throws IOException {
+        for (int i = 0; i < getInt(Option.WARMUP); i++) {
+            body.run();
+        }
+        int iterations = getInt(Option.ITERATIONS);
+        long[] nanos = new long[iterations];
+        long amount = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            amount = body.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        double mean = Arrays.stream(nanos).average().orElse(0);
+        double variance = Arrays.stream(nanos).mapToDouble(n -> (n - mean) * (n - mean)).sum() / Math.max(1, iterations - 1);
+        long min = Arrays.stream(nanos).min().orElse(0);
+        double seconds = mean / TimeUnit.SECONDS.toNanos(1);
+        double throughput = unit.startsWith("MB") ? amount / (1024.0 * 1024.0) / seconds : amount / seconds;
+        out.println(String.format("%-22s %12.1f %10.1f %12.1f %12.1f %s"
+                , name, mean / 1e6, Math.sqrt(variance) / 1e6, min / 1e6, throughput, unit));
+    }
+
+    /**
+     * 合成のログツリーを生成
+     *
+     * @param root 作成先
+     * @throws IOException 入出力エラー
+     */
+    private void generate(Path root) throws IOException {
+        Random random = new Random(Long.parseLong(options.get(Option.SEED)));
+        long now = System.currentTimeMillis();
+        int files = getInt(Option.FILES);
+        int fanOut = getInt(Option.FAN_OUT);
+        double minLog = Math.log(Math.max(1, getInt(Option.MIN_SIZE)));
+        double maxLog = Math.log(Math.max(1, getInt(Option.MAX_SIZE)));
+
+        List<Path> dirs = new ArrayList<>(Collections.singletonList(root));
+        for (int depth = 0; depth < getInt(Option.DEPTH); depth++) {
+            List<Path> children = new ArrayList<>();
+            for (Path dir : dirs) {
+                for (int i = 0; i < fanOut; i++) {
+                    children.add(dir.resolve("dir" + i));
+                }
+            }
+            dirs.addAll(children);
+        }
+
+        for (Path dir : dirs) {
+            Files.createDirectories(dir);
+            for (int i = 0; i < files; i++) {
+                String ext = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+                Path file = dir.resolve("app" + i + "." + ext);
+                long size = (long) Math.exp(minLog + random.nextDouble() * (maxLog - minLog));
+                writeLog(file, size, random);
+
+                // 最終更新日時は過去2年に分布させる
+                Files.setLastModifiedTime(file, FileTime.fromMillis(now - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(730))));
+            }
+        }
+    }
+
+    /**
+     * ログ形式の内容を書き込む ※実際のログに近い圧縮率にするため、定型部分と可変部分を混ぜる
+     *
+     * @param file   ファイル
+     * @param size   サイズ(バイト)
+     * @param random 乱数
+     * @throws IOException 入出力エラー
+     */
+    private static void writeLog(Path file, long size, Random random) throws IOException {
+        String[] levels = {"INFO", "DEBUG", "WARN", "ERROR"};
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < size) {
+                String line = String.format("2024-%02d-%02d %02d:%02d:%02d.%03d %-5s [worker-%d] request id=%08x status=%d elapsed=%dms%n"
+                        , 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60)
+                        , random.nextInt(1000), levels[random.nextInt(levels.length)], random.nextInt(16), random.nextInt()
+                        , random.nextBoolean() ? 200 : 500, random.nextInt(5000));
+                writer.write(line, 0, (int) Math.min(line.length(), size - written));
+                written += line.length();
+            }
+        }
+    }
+
+    /** 進捗を通知しない */
+    private static class NullListener implements FileScanner.Listener {
+        @Override public void visited(Path path, BasicFileAttributes attrs) {
+        }
+
+        @Override public void matched(ScannedFile file) {
+        }
+
+        @Override public void progress(int done, int total) {
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * 作成したZipファイルの検証
+ * <p>
+ * 書き込みとは独立に {@link ZipExtractor} で開き直し、元ファイル毎のエントリを展開して、
+ * CRC-32がセントラルディレクトリの値(圧縮時に元ファイルから計算した値)と、サイズが元ファイルと一致することを確認する。
+ * エントリは複数スレッドで並列に展開する。{@link ZipExtractor} はエントリ毎に位置を指定して読み込むため、
+ * 読み込みの順序に依存せず、展開・CRC-32の計算はスレッド間で並列に行われる。
+ * 重複のためエントリとしなかったファイル({@link Deduplicator})は、一覧に記録され、同じ内容のエントリのサイズが一致することを確認する。
+ * 辞書を参照して圧縮したエントリ({@link FamilyDictionary})は独自の圧縮方式のため、{@link java.util.zip.ZipFile} では開けない。
+ */
+final class ArchiveVerifier {
+    /** 読み込みバッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 検証スレッド数 */
+    private final int parallelism;
+
+    /**
+     * @param parallelism 検証スレッド数
+     */
+    ArchiveVerifier(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 元ファイル郡のエントリの検証 ※圧縮ファイルにある他のエントリ(追記前のエントリ)は検証しない
+     *
+     * @param zipFiles 圧縮ファイル郡 ※分割した場合は全ボリューム
+     * @param pathList 元ファイル郡
+     * @param archiver エントリ名の取得
+     * @param progress 進捗 ※キャンセルの確認
+     * @throws IOException 入出力エラー・不一致
+     */
+    void verify(List<Path> zipFiles, List<Path> pathList, Archiver archiver, CompressProgress progress) throws IOException {
+        Map<String, Path> expected = new HashMap<>();
+        for (Path path : pathList) {
+            expected.put(archiver.getEntryName(path), path);
+        }
+
+        List<ZipExtractor> opened = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path zipFile : zipFiles) {
+                ZipExtractor extractor = new ZipExtractor(zipFile);
+                opened.add(extractor);
+                for (Deduplicator.Duplicate duplicate : extractor.getDuplicates()) {
+                    Path path = expected.remove(duplicate.getName());
+                    if (path != null) {
+                        verifyDuplicate(extractor, duplicate, path);
+                    }
+                }
+                for (ZipDirectory.Record record : extractor.getRecords()) {
+                    Path path = expected.remove(record.getName());
+                    if (path != null) {
+                        futures.add(executor.submit(() -> {
+                            verifyEntry(extractor, record, path, progress);
+                            return null;
+                        }));
+                    }
+                }
+            }
+            if (!expected.isEmpty()) {
+                throw new ZipException("エントリがありません。(" + expected.keySet().iterator().next() + " 他" + (expected.size() - 1) + "件)");
+            }
+            for (Future<?> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            executor.shutdownNow();
+            for (ZipExtractor extractor : opened) {
+                extractor.close();
+            }
+        }
+    }
+
+    /**
+     * 1エントリの検証
+     */
+    private static void verifyEntry(ZipExtractor extractor, ZipDirectory.Record entry, Path path, CompressProgress progress) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = extractor.getInputStream(entry)) {
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+                size += n;
+                progress.checkCancelled();
+            }
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            throw new ZipException("CRC-32が一致しません。(" + entry.getName() + ")");
+        }
+        if (size != entry.getSize() || size != Files.size(path)) {
+            throw new ZipException("サイズが一致しません。(" + entry.getName() + ": " + size + " / " + Files.size(path) + ")");
+        }
+    }
+
+    /**
+     * 重複ファイルの検証 ※内容はハッシュ値で比較済みのため、同じ内容のエントリの有無・サイズを確認する
+     */
+    private static void verifyDuplicate(ZipExtractor extractor, Deduplicator.Duplicate duplicate, Path path) throws IOException {
+        ZipDirectory.Record original = extractor.getRecord(duplicate.getOriginal());
+        if (original == null) {
+            throw new ZipException("重複ファイルの元のエントリがありません。(" + duplicate.getName() + " → " + duplicate.getOriginal() + ")");
+        }
+        if (original.getSize() != Files.size(path)) {
+            throw new ZipException("サイズが一致しません。(" + duplicate.getName() + ": " + original.getSize() + " / " + Files.size(path) + ")");
+        }
+    }
+
+    private static void getResult(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GZipRuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new GZipRuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 選択ファイル郡を1つの圧縮ファイルにまとめる処理
+ */
+abstract class Archiver {
+    /** 読み込みバッファ(ブロック)のデフォルトサイズ */
+    static final int DEFAULT_BUFFER_SIZE = ParallelDeflater.DEFAULT_BLOCK_SIZE;
+
+    /** エントリ名から除去する作業ディレクトリ */
+    protected final String removeStr;
+
+    /** 読み込みバッファ(ブロック)のサイズ */
+    protected final int bufferSize;
+
+    /** 圧縮スレッド数 */
+    protected final int parallelism;
+
+    /** 圧縮レベル */
+    protected final CompressionLevel compressionLevel;
+
+    /** 圧縮後の検証 ※検証しない場合はnull */
+    private ArchiveVerifier verifier;
+
+    /**
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     */
+    protected Archiver(String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel) {
+        if (bufferSize < ParallelDeflater.DICTIONARY_SIZE) {
+            throw new GZipRuntimeException("バッファサイズは" + ParallelDeflater.DICTIONARY_SIZE + "以上を指定してください。(" + bufferSize + ")");
+        }
+        this.removeStr = removeStr;
+        this.bufferSize = bufferSize;
+        this.parallelism = parallelism;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * 1ファイルにまとめる圧縮処理の生成
+     *
+     * @param format           圧縮形式
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     * @param volumeSize       分割するボリュームの上限サイズ ※zip形式のみ。0以下は分割しない
+     * @param pipelinedDelete  元ファイルを圧縮と並行して削除するか ※zip形式(分割しない場合)のみ
+     * @param verify           圧縮後に検証するか ※zip形式のみ。並行して削除する場合はエントリ毎に検証済み
+     * @param dedup            同じ内容のファイルを1エントリにまとめるか ※zip形式(分割しない場合)のみ
+     * @param dictionary       ローテーションしたログの系列毎に共通の辞書で圧縮するか ※zip形式(分割しない場合)のみ
+     * @return 圧縮処理
+     */
+    static Archiver create(OutputFormat format, String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel,
+            long volumeSize, boolean pipelinedDelete, boolean verify, boolean dedup, boolean dictionary) {
+        switch (format) {
+            case ZIP:
+                Archiver archiver = volumeSize > 0
+                        ? new SplitZipArchiver(removeStr, bufferSize, parallelism, compressionLevel, volumeSize)
+                        : new ZipArchiver(removeStr, bufferSize, parallelism, compressionLevel, pipelinedDelete, dedup, dictionary);
+                if (verify) {
+                    archiver.verifier = new ArchiveVerifier(parallelism);
+                }
+                return archiver;
+            case TAR_GZ:
+                return new TarArchiver(removeStr, bufferSize, parallelism, compressionLevel);
+            default:
+                throw new GZipRuntimeException("1ファイルにまとめる圧縮形式ではありません。(" + format.getFormatName() + ")");
+        }
+    }
+
+    /**
+     * 圧縮処理 ※元ファイルは圧縮ファイルの作成完了後に削除する
+     *
+     * @param pathList       圧縮するファイル郡
+     * @param archiveFile    圧縮ファイル
+     * @param deleteOriginal 元ファイルを削除するか
+     * @param progress       進捗
+     * @return 作成した圧縮ファイル郡 ※分割した場合は複数
+     * @throws IOException 入出力エラー
+     */
+    public List<Path> archive(List<Path> pathList, Path archiveFile, boolean deleteOriginal, CompressProgress progress) throws IOException {
+        return archive(pathList, archiveFile, false, deleteOriginal, progress);
+    }
+
+    /**
+     * 圧縮処理 ※元ファイルは圧縮ファイルの作成完了後に削除する
+     *
+     * @param pathList       圧縮するファイル郡
+     * @param archiveFile    圧縮ファイル
+     * @param append         既存の圧縮ファイルに追記するか ※圧縮ファイルがない場合は新規作成
+     * @param deleteOriginal 元ファイルを削除するか
+     * @param progress       進捗
+     * @return 作成(追記)した圧縮ファイル郡 ※分割した場合は複数
+     * @throws IOException 入出力エラー
+     */
+    public List<Path> archive(List<Path> pathList, Path archiveFile, boolean append, boolean deleteOriginal, CompressProgress progress) throws IOException {
+        GZipMetrics metrics = GZipMetrics.get();
+        boolean appending = append && Files.exists(archiveFile);
+        long existingSize = appending ? Files.size(archiveFile) : 0;
+        long start = System.nanoTime();
+        List<Path> archiveFiles = appending ? append(pathList, archiveFile, progress) : archive(pathList, archiveFile, progress);
+        metrics.record(GZipMetrics.Phase.COMPRESS, start);
+        for (Path file : archiveFiles) {
+            metrics.addBytesWritten(Files.size(file));
+        }
+        metrics.addBytesWritten(-existingSize);
+
+        if (verifier != null) {
+            // 検証で不一致の場合は元ファイルを削除しない
+            start = System.nanoTime();
+            verifier.verify(archiveFiles, pathList, this, progress);
+            metrics.record(GZipMetrics.Phase.VERIFY, start);
+        }
+
+        if (deleteOriginal) {
+            // 展開に必要な情報を読み込めない場合は元ファイルを削除しない
+            checkReadable(archiveFiles);
+
+            // 圧縮ファイルの作成完了後はキャンセルを受け付けない
+            start = System.nanoTime();
+            for (Path path : pathList) {
+                Files.delete(path);
+            }
+            metrics.record(GZipMetrics.Phase.DELETE, start);
+            metrics.addFilesDeleted(pathList.size());
+        }
+        return archiveFiles;
+    }
+
+    /**
+     * 元ファイルを削除する前の確認 ※圧縮ファイル独自の情報を読み込めることを確認する
+     *
+     * @param archiveFiles 作成(追記)した圧縮ファイル郡
+     * @throws IOException 入出力エラー・読み込めない
+     */
+    protected void checkReadable(List<Path> archiveFiles) throws IOException {
+    }
+
+    /**
+     * 圧縮処理 ※失敗・キャンセルした場合は作成途中の圧縮ファイルを削除する
+     *
+     * @param pathList    圧縮するファイル郡
+     * @param archiveFile 圧縮ファイル
+     * @param progress    進捗
+     * @return 作成した圧縮ファイル郡 ※分割した場合は複数
+     * @throws IOException 入出力エラー
+     */
+    public abstract List<Path> archive(List<Path> pathList, Path archiveFile, CompressProgress progress) throws IOException;
+
+    /**
+     * 既存の圧縮ファイルへの追記処理 ※失敗・キャンセルした場合は追記前の状態に戻す
+     *
+     * @param pathList    圧縮するファイル郡
+     * @param archiveFile 既存の圧縮ファイル
+     * @param progress    進捗
+     * @return 追記した圧縮ファイル郡
+     * @throws IOException 入出力エラー
+     */
+    public List<Path> append(List<Path> pathList, Path archiveFile, CompressProgress progress) throws IOException {
+        throw new GZipRuntimeException("追記できない圧縮形式です。(" + archiveFile.getFileName() + ")");
+    }
+
+    /**
+     * エントリ名の取得
+     *
+     * @param path ファイルパス
+     * @return 作業ディレクトリからの相対パス
+     */
+    public String getEntryName(Path path) {
+        return path.toString().replace(removeStr, "");
+    }
+}
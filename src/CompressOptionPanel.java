@@ -0,0 +1,49 @@
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/**
+ * 圧縮ダイアログの設定項目
+ */
+class CompressOptionPanel extends JPanel {
+    private final JComboBox<OutputFormat> cmb_format = new JComboBox<>(OutputFormat.values());
+    private final JComboBox<CompressionLevel> cmb_level = new JComboBox<>(CompressionLevel.values());
+
+    /** 次に追加する行 */
+    private int row;
+
+    protected CompressOptionPanel(OutputFormat format, CompressionLevel level) {
+        super(new GridBagLayout());
+        cmb_format.setSelectedItem(format);
+        addRow("圧縮形式", cmb_format);
+        cmb_level.setSelectedItem(level);
+        addRow("圧縮レベル", cmb_level);
+    }
+
+    private void addRow(String labelText, JComboBox<?> comboBox) {
+        GridBagConstraints c = new GridBagConstraints();
+        c.gridy = row++;
+        c.insets = new Insets(2, 2, 2, 2);
+        c.anchor = GridBagConstraints.WEST;
+
+        JLabel label = new JLabel(labelText);
+        label.setLabelFor(comboBox);
+        c.gridx = 0;
+        add(label, c);
+
+        c.gridx = 1;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        add(comboBox, c);
+    }
+
+    public OutputFormat getFormat() {
+        return (OutputFormat) cmb_format.getSelectedItem();
+    }
+
+    public CompressionLevel getLevel() {
+        return (CompressionLevel) cmb_level.getSelectedItem();
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 圧縮の進捗
+ * <p>
+ * 圧縮処理のスレッドが読み込んだバイト数・完了したファイル数を加算し、画面側は任意のタイミングで参照する。
+ * カウンターは {@link LongAdder} のため、複数の圧縮スレッドでも競合しない。
+ * キャンセルされた場合、以降の読み込みは {@link InterruptedIOException} となる。
+ */
+class CompressProgress {
+    /** 圧縮するファイル数 */
+    private final int totalFiles;
+
+    /** 圧縮するファイルの合計サイズ */
+    private final long totalBytes;
+
+    /** 開始日時(ナノ秒) */
+    private final long startNanos = System.nanoTime();
+
+    /** 読み込み済みのバイト数 */
+    private final LongAdder processedBytes = new LongAdder();
+
+    /** 読み込みが完了したファイル数 */
+    private final LongAdder processedFiles = new LongAdder();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param totalFiles 圧縮するファイル数
+     * @param totalBytes 圧縮するファイルの合計サイズ
+     */
+    protected CompressProgress(int totalFiles, long totalBytes) {
+        this.totalFiles = totalFiles;
+        this.totalBytes = totalBytes;
+    }
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    public long getProcessedFiles() {
+        return processedFiles.sum();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes.sum();
+    }
+
+    /**
+     * 進捗率
+     *
+     * @return 0～100
+     */
+    public int getPercentage() {
+        if (totalBytes <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, getProcessedBytes() * 100 / totalBytes);
+    }
+
+    /**
+     * 処理速度
+     *
+     * @return バイト/秒
+     */
+    public long getBytesPerSecond() {
+        return perSecond(getProcessedBytes());
+    }
+
+    /**
+     * 処理速度
+     *
+     * @return ファイル数/秒
+     */
+    public long getFilesPerSecond() {
+        return perSecond(getProcessedFiles());
+    }
+
+    private long perSecond(long count) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return (long) (count / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * 残り時間の見込み
+     *
+     * @return 秒 ※算出できない場合は-1
+     */
+    public long getRemainingSeconds() {
+        long bytesPerSecond = getBytesPerSecond();
+        if (bytesPerSecond <= 0) {
+            return -1;
+        }
+        return Math.max(0, totalBytes - getProcessedBytes()) / bytesPerSecond;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * キャンセル判定
+     *
+     * @throws InterruptedIOException キャンセルされた
+     */
+    public void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("圧縮はキャンセルされました。");
+        }
+    }
+
+    /**
+     * 読み込まないファイルの完了 ※重複のため圧縮しないファイル
+     *
+     * @param bytes ファイルサイズ
+     */
+    public void skip(long bytes) {
+        processedBytes.add(bytes);
+        processedFiles.increment();
+    }
+
+    /**
+     * 読み込んだバイト数を進捗に加算する入力ストリーム ※クローズで1ファイル完了とする
+     *
+     * @param in 入力ストリーム
+     * @return 入力ストリーム
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            /** 開始日時(ナノ秒) ※計測値の圧縮速度の算出用 */
+            private final long openNanos = System.nanoTime();
+
+            /** このファイルの読み込み済みのバイト数 */
+            private long bytes;
+
+            @Override public int read() throws IOException {
+                checkCancelled();
+                int b = super.read();
+                if (b >= 0) {
+                    processedBytes.increment();
+                    bytes++;
+                }
+                return b;
+            }
+
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                checkCancelled();
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    processedBytes.add(n);
+                    bytes += n;
+                }
+                return n;
+            }
+
+            @Override public void close() throws IOException {
+                super.close();
+                processedFiles.increment();
+                GZipMetrics.get().recordRead(bytes, System.nanoTime() - openNanos);
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * 圧縮レベル
+ * <p>
+ * 自動の場合は各ファイルの先頭ブロックを標本としてバイト値のエントロピーを求め、
+ * 圧縮済みのファイル等、圧縮効果のないファイルは無圧縮で格納する。
+ */
+enum CompressionLevel {
+    FAST("fast", Deflater.BEST_SPEED, "高速"),
+    DEFAULT("default", Deflater.DEFAULT_COMPRESSION, "標準"),
+    MAX("max", Deflater.BEST_COMPRESSION, "最大"),
+    AUTO("auto", Deflater.DEFAULT_COMPRESSION, "自動(圧縮効果のないファイルは無圧縮)");
+
+    /** 標本のサイズ */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    /** 判定に必要な標本の最小サイズ ※小さいファイルは圧縮しても負荷が小さい */
+    private static final int MIN_SAMPLE_SIZE = 4 * 1024;
+
+    /** 圧縮効果がないと判定するエントロピー(ビット/バイト) ※最大は8 */
+    private static final double INCOMPRESSIBLE_ENTROPY = 7.5;
+
+    private final String levelName;
+    private final int level;
+    private final String displayName;
+
+    CompressionLevel(String levelName, int level, String displayName) {
+        this.levelName = levelName;
+        this.level = level;
+        this.displayName = displayName;
+    }
+
+    static CompressionLevel getByLevelName(String levelName) {
+        for (CompressionLevel compressionLevel : values()) {
+            if (compressionLevel.levelName.equalsIgnoreCase(levelName)) {
+                return compressionLevel;
+            }
+        }
+        throw new GZipRuntimeException("該当する圧縮レベルが見つかりません。(" + levelName + ")");
+    }
+
+    public String getLevelName() {
+        return levelName;
+    }
+
+    /**
+     * @return {@link Deflater} の圧縮レベル
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 無圧縮で格納するか
+     *
+     * @param path ファイルパス
+     * @return 自動で、かつ先頭ブロックに圧縮効果がない場合はtrue
+     * @throws IOException 読み込みエラー
+     */
+    public boolean shouldStore(Path path) throws IOException {
+        if (this != AUTO) {
+            return false;
+        }
+        ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (sample.hasRemaining() && channel.read(sample) > 0) {
+                // 標本サイズまで読み込む
+            }
+        }
+        if (sample.position() < MIN_SAMPLE_SIZE) {
+            return false;
+        }
+        return entropy(sample.array(), sample.position()) >= INCOMPRESSIBLE_ENTROPY;
+    }
+
+    /**
+     * バイト値のエントロピー
+     *
+     * @param data   データ
+     * @param length 長さ
+     * @return ビット/バイト
+     */
+    static double entropy(byte[] data, int length) {
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[data[i] & 0xff]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    @Override public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,71 @@
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 検索対象の最終更新日
+ */
+enum DateLastModified {
+    TODAY(0, "全て"),
+    FIVE_YEARS_AGO(-60, "5年以上経過"),
+    FOUR_YEARS_AGO(-48, "4年以上経過"),
+    THREE_YEARS_AGO(-36, "3年以上経過"),
+    TWO_YEARS_AGO(-24, "2年以上経過"),
+    ONE_YEAR_AGO(-12, "1年以上経過"),
+    HALF_YEAR_AGO(-6, "半年以上経過"),
+    ONE_MONTH_AGO(-3, "3ヶ月以上経過");
+
+    private final int months;
+    private final String dateName;
+
+    DateLastModified(int months, String dateName) {
+        this.months = months;
+        this.dateName = dateName;
+    }
+
+    static DateLastModified getByDateName(String dateName) {
+        for (DateLastModified dlm : values()) {
+            if (dlm.dateName.equals(dateName)) {
+                return dlm;
+            }
+        }
+        throw new GZipRuntimeException("該当する日付が見つかりません。(" + dateName + ")");
+    }
+
+    /**
+     * 表示名または定数名から取得 ※コマンドラインでは定数名(例:ONE_YEAR_AGO)でも指定できる
+     *
+     * @param name 表示名または定数名
+     * @return 最終更新日
+     */
+    static DateLastModified getByName(String name) {
+        for (DateLastModified dlm : values()) {
+            if (dlm.dateName.equals(name) || dlm.name().equalsIgnoreCase(name)) {
+                return dlm;
+            }
+        }
+        throw new GZipRuntimeException("該当する日付が見つかりません。(" + name + ")");
+    }
+
+    static String[] getDateNames() {
+        DateLastModified[] dateLastModified = values();
+        int len = dateLastModified.length;
+        String[] dateNames = new String[len];
+        for (int i = 0; i < len; i++) {
+            dateNames[i] = dateLastModified[i].dateName;
+        }
+        return dateNames;
+    }
+
+    public String getDateName() {
+        return dateName;
+    }
+
+    /**
+     * 最終更新日時の基準
+     *
+     * @return 現在日時から経過月数を遡った日時(エポックミリ秒)
+     */
+    public long getCutoffMillis() {
+        return LocalDateTime.now().plusMonths(months).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
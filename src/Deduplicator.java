@@ -0,0 +1,194 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 同じ内容のファイルの検出
+ * <p>
+ * サイズが同じファイルが他にあるものだけを複数スレッドでSHA-256のハッシュ値を計算し、サイズ・ハッシュ値が同じファイルを同じ内容とする。
+ * 圧縮ファイルには同じ内容の最初のファイルのみ格納し、他のファイルは {@link #MANIFEST_ENTRY} に記録して展開時にコピーする。
+ */
+final class Deduplicator {
+    /** 重複ファイルの一覧のエントリ名 ※1行毎に「エントリ名 TAB 格納したエントリ名 TAB 最終更新日時(エポックミリ秒)」。エントリ名は {@link MetadataTsv} で変換する */
+    static final String MANIFEST_ENTRY = "META-INF/G-Zip/duplicates.tsv";
+
+    private static final String SEPARATOR = "\t";
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 重複ファイル */
+    static final class Duplicate {
+        private final String name;
+        private final String original;
+        private final long lastModified;
+
+        Duplicate(String name, String original, long lastModified) {
+            this.name = name;
+            this.original = original;
+            this.lastModified = lastModified;
+        }
+
+        /** エントリ名 */
+        String getName() {
+            return name;
+        }
+
+        /** 同じ内容で格納したエントリ名 */
+        String getOriginal() {
+            return original;
+        }
+
+        /** 最終更新日時(エポックミリ秒) */
+        long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /** ハッシュ値の計算スレッド数 */
+    private final int parallelism;
+
+    /**
+     * @param parallelism ハッシュ値の計算スレッド数
+     */
+    Deduplicator(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 同じ内容のファイルの検出
+     *
+     * @param pathList 圧縮するファイル郡
+     * @param progress 進捗 ※キャンセルの確認
+     * @return 重複ファイル → 同じ内容の最初のファイル ※圧縮するファイル郡の順
+     * @throws IOException 読み込みエラー
+     */
+    Map<Path, Path> findDuplicates(List<Path> pathList, CompressProgress progress) throws IOException {
+        // サイズが同じファイルが他にない場合はハッシュ値を計算しない
+        Map<Long, List<Path>> sizeGroups = new HashMap<>();
+        for (Path path : pathList) {
+            sizeGroups.computeIfAbsent(Files.size(path), size -> new ArrayList<>()).add(path);
+        }
+
+        Map<Path, Future<String>> hashes = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (List<Path> group : sizeGroups.values()) {
+                if (group.size() < 2) {
+                    continue;
+                }
+                for (Path path : group) {
+                    hashes.put(path, executor.submit(() -> hash(path, progress)));
+                }
+            }
+
+            Map<String, Path> originals = new HashMap<>();
+            Map<Path, Path> duplicates = new LinkedHashMap<>();
+            for (Path path : pathList) {
+                Future<String> hash = hashes.get(path);
+                if (hash == null) {
+                    continue;
+                }
+                String key = Files.size(path) + SEPARATOR + getResult(hash);
+                Path original = originals.putIfAbsent(key, path);
+                if (original != null) {
+                    duplicates.put(path, original);
+                }
+            }
+            return duplicates;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String hash(Path path, CompressProgress progress) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new GZipRuntimeException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                progress.checkCancelled();
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 重複ファイルの一覧の作成
+     *
+     * @param duplicates 重複ファイル郡
+     * @return {@link #MANIFEST_ENTRY} の内容
+     */
+    static byte[] toManifest(List<Duplicate> duplicates) {
+        StringBuilder sb = new StringBuilder();
+        for (Duplicate duplicate : duplicates) {
+            sb.append(MetadataTsv.toLine(duplicate.name, duplicate.original, Long.toString(duplicate.lastModified)));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 重複ファイルの一覧の読み込み
+     *
+     * @param in {@link #MANIFEST_ENTRY} の内容 ※読み込み後にクローズする
+     * @return 重複ファイル郡
+     * @throws IOException 読み込みエラー
+     */
+    static List<Duplicate> readManifest(InputStream in) throws IOException {
+        List<Duplicate> duplicates = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    String[] fields = MetadataTsv.fromLine(line, 3);
+                    duplicates.add(new Duplicate(fields[0], fields[1], Long.parseLong(fields[2])));
+                } catch (GZipRuntimeException | NumberFormatException e) {
+                    throw new GZipRuntimeException("重複ファイルの一覧を読み込めません。(" + line + ")", e);
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GZipRuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new GZipRuntimeException(e.getCause());
+        }
+    }
+}
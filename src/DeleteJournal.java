@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 圧縮と並行した削除のジャーナル
+ * <p>
+ * 圧縮ファイルと同じフォルダに「圧縮ファイル名.journal」として作成し、同期した書き込み位置と、その後に削除する元ファイルを追記する。
+ * 処理が中断した場合は {@link #recover(Path, Charset)} で、最後に同期した位置までのエントリで圧縮ファイルを復旧する。
+ * 正常に完了した場合は削除する。
+ * <pre>
+ * archive	圧縮ファイル
+ * commit	書き込み位置	エントリ数
+ * delete	元ファイル
+ * …
+ * complete
+ * </pre>
+ */
+final class DeleteJournal implements AutoCloseable {
+    /** ジャーナルファイルの拡張子 */
+    static final String EXTENSION = ".journal";
+
+    private static final String ARCHIVE = "archive";
+    private static final String COMMIT = "commit";
+    private static final String DELETE = "delete";
+    private static final String COMPLETE = "complete";
+    private static final String SEPARATOR = "\t";
+
+    private final Path journalFile;
+    private final FileChannel channel;
+
+    private DeleteJournal(Path journalFile, FileChannel channel) {
+        this.journalFile = journalFile;
+        this.channel = channel;
+    }
+
+    /**
+     * ジャーナルファイルのパスを取得
+     *
+     * @param archiveFile 圧縮ファイル
+     * @return 圧縮ファイル名.journal
+     */
+    static Path getJournalPath(Path archiveFile) {
+        return archiveFile.resolveSibling(archiveFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * ジャーナルの作成
+     *
+     * @param archiveFile 圧縮ファイル
+     * @return ジャーナル
+     * @throws IOException 入出力エラー・前回のジャーナルが残っている
+     */
+    static DeleteJournal create(Path archiveFile) throws IOException {
+        Path journalFile = getJournalPath(archiveFile);
+        if (Files.exists(journalFile)) {
+            throw new FileAlreadyExistsException(journalFile.toString(), null, "前回の処理が中断しています。復旧してください。");
+        }
+        FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        DeleteJournal journal = new DeleteJournal(journalFile, channel);
+        try {
+            journal.append(ARCHIVE + SEPARATOR + archiveFile.toAbsolutePath() + System.lineSeparator());
+        } catch (IOException e) {
+            journal.discard();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * 同期した書き込み位置と、削除する元ファイルの記録 ※元ファイルの削除前に呼び出す
+     *
+     * @param offset     同期した書き込み位置
+     * @param entryCount その時点のエントリ数
+     * @param pathList   削除する元ファイル郡
+     * @throws IOException 入出力エラー
+     */
+    void commit(long offset, int entryCount, List<Path> pathList) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(COMMIT).append(SEPARATOR).append(offset).append(SEPARATOR).append(entryCount).append(System.lineSeparator());
+        for (Path path : pathList) {
+            sb.append(DELETE).append(SEPARATOR).append(path.toAbsolutePath()).append(System.lineSeparator());
+        }
+        append(sb.toString());
+    }
+
+    /**
+     * 完了の記録 ※圧縮ファイルの完了・元ファイルの削除後に呼び出す
+     *
+     * @throws IOException 入出力エラー
+     */
+    void complete() throws IOException {
+        append(COMPLETE + System.lineSeparator());
+    }
+
+    /**
+     * ジャーナルの削除 ※圧縮ファイルが完全な状態の場合
+     *
+     * @throws IOException 入出力エラー
+     */
+    void discard() throws IOException {
+        channel.close();
+        Files.deleteIfExists(journalFile);
+    }
+
+    private void append(String lines) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+        channel.force(false);
+    }
+
+    @Override public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 中断した処理の復旧 ※最後に同期した位置までのエントリで圧縮ファイルのセントラルディレクトリを作り直し、ジャーナルを削除する
+     *
+     * @param journalFile ジャーナルファイル
+     * @param charset     エントリ名の文字コード
+     * @return 削除された可能性のある元ファイル郡 ※全て圧縮ファイルに含まれる
+     * @throws IOException 入出力エラー・ジャーナルを読み込めない
+     */
+    static List<Path> recover(Path journalFile, Charset charset) throws IOException {
+        Path archiveFile = null;
+        long offset = -1;
+        boolean complete = false;
+        List<Path> deleted = new ArrayList<>();
+        for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(SEPARATOR, 3);
+            switch (fields[0]) {
+                case ARCHIVE:
+                    archiveFile = Paths.get(fields[1]);
+                    break;
+                case COMMIT:
+                    offset = Long.parseLong(fields[1]);
+                    break;
+                case DELETE:
+                    deleted.add(Paths.get(fields[1]));
+                    break;
+                case COMPLETE:
+                    complete = true;
+                    break;
+                default:
+                    // 中断時の書きかけの行
+                    break;
+            }
+        }
+        if (archiveFile == null) {
+            throw new GZipRuntimeException("ジャーナルを読み込めません。(" + journalFile + ")");
+        }
+
+        if (!complete) {
+            if (offset < 0) {
+                // 削除前に中断した場合、作成途中の圧縮ファイルは不要
+                Files.deleteIfExists(archiveFile);
+            } else {
+                ZipWriter.recover(archiveFile, offset, charset);
+            }
+        }
+        Files.delete(journalFile);
+        return deleted;
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * 検索対象の拡張子
+ */
+enum Extension {
+    LOG("log"),
+    TMP("tmp"),
+    BAK("bak"),
+    CSV("csv"),
+    TXT("txt");
+
+    private final String extName;
+
+    Extension(String extName) {
+        this.extName = extName;
+    }
+
+    public String getExtName() {
+        return extName;
+    }
+}
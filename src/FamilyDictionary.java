@@ -0,0 +1,178 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ローテーションしたログの系列毎の共通辞書
+ * <p>
+ * 同じフォルダの「*.log」「*.log.数値」を1つの系列とし、新しいファイルから順に先頭の行を抜き出して
+ * Deflateのプリセット辞書(最大32KB)を作る。系列の各エントリは辞書を参照して圧縮するため、
+ * 小さいファイルでも空の状態から圧縮する場合より圧縮率が高くなる。
+ * <p>
+ * 辞書はエントリ({@link #ENTRY_PREFIX})として、エントリ名との対応は {@link #MAPPING_ENTRY} として格納する。
+ * 辞書を参照したエントリは独自の圧縮方式({@link ZipWriter#METHOD_DEFLATED_DICTIONARY})とするため、
+ * {@link ZipExtractor} でのみ展開でき、他のツールでは未対応の圧縮方式として展開できない。
+ */
+final class FamilyDictionary {
+    /** 辞書の対応表のエントリ名 ※1行毎に「エントリ名 TAB 辞書のエントリ名」。エントリ名は {@link MetadataTsv} で変換する */
+    static final String MAPPING_ENTRY = "META-INF/G-Zip/dictionaries.tsv";
+
+    /** 辞書のエントリ名の接頭辞 ※「接頭辞 + 連番.dict」 */
+    static final String ENTRY_PREFIX = "META-INF/G-Zip/dictionaries/";
+
+    /** 辞書に先頭を抜き出すファイル数 */
+    private static final int SAMPLE_FILES = 8;
+
+    private final String entryName;
+    private final byte[] data;
+
+    private FamilyDictionary(String entryName, byte[] data) {
+        this.entryName = entryName;
+        this.data = data;
+    }
+
+    /** 辞書のエントリ名 */
+    String getEntryName() {
+        return entryName;
+    }
+
+    /** 辞書 */
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     * 系列毎の辞書の作成 ※2ファイル以上の系列のみ
+     *
+     * @param pathList 圧縮するファイル郡 ※無圧縮・重複のファイルを除く
+     * @param progress 進捗 ※キャンセルの確認
+     * @return ファイル → 系列の辞書 ※圧縮するファイル郡の順
+     * @throws IOException 読み込みエラー
+     */
+    static Map<Path, FamilyDictionary> build(List<Path> pathList, CompressProgress progress) throws IOException {
+        Map<Path, List<Path>> families = new LinkedHashMap<>();
+        for (Path path : pathList) {
+            Path family = path.resolveSibling(ScanFilter.toFamilyName(path.getFileName().toString()));
+            families.computeIfAbsent(family, key -> new ArrayList<>()).add(path);
+        }
+
+        Map<Path, FamilyDictionary> dictionaries = new LinkedHashMap<>();
+        int number = 0;
+        for (List<Path> members : families.values()) {
+            if (members.size() < 2) {
+                continue;
+            }
+            progress.checkCancelled();
+            byte[] data = sample(members);
+            if (data.length == 0) {
+                continue;
+            }
+            FamilyDictionary dictionary = new FamilyDictionary(ENTRY_PREFIX + number++ + ".dict", data);
+            for (Path member : members) {
+                dictionaries.put(member, dictionary);
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * 系列のファイルの先頭を連結 ※Deflateは辞書の末尾ほど短い距離で参照できるため、最新のファイルを末尾にする
+     */
+    private static byte[] sample(List<Path> members) throws IOException {
+        List<Path> samples = new ArrayList<>(members);
+        samples.sort(Comparator.comparingLong(FamilyDictionary::getRotation));
+        samples = samples.subList(0, Math.min(SAMPLE_FILES, samples.size()));
+        Collections.reverse(samples);
+
+        int budget = ParallelDeflater.DICTIONARY_SIZE / samples.size();
+        ByteBuffer dictionary = ByteBuffer.allocate(ParallelDeflater.DICTIONARY_SIZE);
+        for (Path path : samples) {
+            ByteBuffer head = ByteBuffer.allocate(budget);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (head.hasRemaining()) {
+                    if (channel.read(head) < 0) {
+                        break;
+                    }
+                }
+            }
+            // 途中で切れた行は含めない
+            int length = head.position();
+            if (length == budget) {
+                int newline = length - 1;
+                while (newline >= 0 && head.get(newline) != '\n') {
+                    newline--;
+                }
+                if (newline >= 0) {
+                    length = newline + 1;
+                }
+            }
+            dictionary.put(head.array(), 0, length);
+        }
+        byte[] data = new byte[dictionary.position()];
+        System.arraycopy(dictionary.array(), 0, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * ローテーションの番号 ※番号のないファイル(最新)は-1
+     */
+    private static long getRotation(Path path) {
+        String fileName = path.getFileName().toString();
+        String familyName = ScanFilter.toFamilyName(fileName);
+        if (familyName.length() == fileName.length()) {
+            return -1;
+        }
+        String digits = fileName.substring(familyName.length() + 1);
+        return digits.length() > 18 ? Long.MAX_VALUE : Long.parseLong(digits);
+    }
+
+    /**
+     * 辞書の対応表の作成
+     *
+     * @param mapping エントリ名 → 辞書のエントリ名
+     * @return {@link #MAPPING_ENTRY} の内容
+     */
+    static byte[] toMapping(Map<String, String> mapping) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            sb.append(MetadataTsv.toLine(entry.getKey(), entry.getValue()));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 辞書の対応表の読み込み
+     *
+     * @param in {@link #MAPPING_ENTRY} の内容 ※読み込み後にクローズする
+     * @return エントリ名 → 辞書のエントリ名
+     * @throws IOException 読み込みエラー
+     */
+    static Map<String, String> readMapping(InputStream in) throws IOException {
+        Map<String, String> mapping = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields;
+                try {
+                    fields = MetadataTsv.fromLine(line, 2);
+                } catch (GZipRuntimeException e) {
+                    throw new GZipRuntimeException("辞書の対応表を読み込めません。(" + line + ")", e);
+                }
+                mapping.put(fields[0], fields[1]);
+            }
+        }
+        return mapping;
+    }
+}
@@ -0,0 +1,538 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * ディレクトリ走査
+ * <p>
+ * 1回の走査で各ファイルの属性を1度だけ取得してフィルターに渡す。
+ * 走査モードは {@link Files#walkFileTree} による逐次走査、サブディレクトリ単位で
+ * {@link ForkJoinPool} に分散する並列走査、前回の走査の索引({@link ScanIndex})を使用する索引付き走査から選択でき、
+ * いずれも同じ順序で同じ結果を返す。
+ */
+class FileScanner {
+
+    /** 走査モード */
+    enum Mode {
+        SEQUENTIAL("sequential"),
+        PARALLEL("parallel"),
+        INDEXED("indexed");
+
+        private final String modeName;
+
+        Mode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        static Mode getByModeName(String modeName) {
+            for (Mode mode : values()) {
+                if (mode.modeName.equalsIgnoreCase(modeName)) {
+                    return mode;
+                }
+            }
+            throw new GZipRuntimeException("該当する走査モードが見つかりません。(" + modeName + ")");
+        }
+
+        @Override public String toString() {
+            return modeName;
+        }
+    }
+
+    /** 走査の進捗通知 ※並列走査では複数スレッドから呼ばれる */
+    interface Listener {
+        /**
+         * 通常ファイルを訪問した ※走査のたびに呼ばれるため、重い処理はしないこと
+         *
+         * @param path  ファイルパス
+         * @param attrs ファイル属性
+         */
+        void visited(Path path, BasicFileAttributes attrs);
+
+        /**
+         * フィルターに合致したファイルが確定した
+         * <p>
+         * 走査結果と同じ順序で、1つのスレッドから呼ばれる。
+         * 並列走査では順序を保つため、作業ディレクトリ直下のエントリ単位で先頭から順に通知する。
+         *
+         * @param file 合致したファイル
+         */
+        void matched(ScannedFile file);
+
+        /**
+         * 作業ディレクトリ直下のエントリの走査が完了した
+         *
+         * @param done  完了したエントリ数
+         * @param total 直下のエントリ数
+         */
+        void progress(int done, int total);
+    }
+
+    private final BiPredicate<Path, BasicFileAttributes> matcher;
+    private final Listener listener;
+    private final Mode mode;
+    private final int parallelism;
+
+    /** 索引付き走査のみ:拡張子フィルター、索引の保存先 */
+    private final Predicate<String> candidate;
+    private final Path indexDir;
+
+    /** 計測値:訪問した通常ファイル数、検索条件の判定時間(ナノ秒) */
+    private final LongAdder visitedFiles = new LongAdder();
+    private final LongAdder filterNanos = new LongAdder();
+
+    /**
+     * @param matcher  ファイルフィルター
+     * @param listener 進捗通知先
+     */
+    protected FileScanner(BiPredicate<Path, BasicFileAttributes> matcher, Listener listener) {
+        this(matcher, listener, Mode.SEQUENTIAL, 1);
+    }
+
+    /**
+     * @param matcher     ファイルフィルター ※並列走査では複数スレッドから呼ばれる
+     * @param listener    進捗通知先
+     * @param mode        走査モード
+     * @param parallelism 並列走査のスレッド数
+     */
+    protected FileScanner(BiPredicate<Path, BasicFileAttributes> matcher, Listener listener, Mode mode, int parallelism) {
+        if (parallelism < 1) {
+            throw new GZipRuntimeException("並列数は1以上を指定してください。(" + parallelism + ")");
+        }
+        if (mode == Mode.INDEXED) {
+            throw new GZipRuntimeException("索引付き走査には索引の保存先を指定してください。");
+        }
+        this.matcher = matcher;
+        this.listener = listener;
+        this.mode = mode;
+        this.parallelism = parallelism;
+        this.candidate = null;
+        this.indexDir = null;
+    }
+
+    /**
+     * 索引付き走査
+     *
+     * @param filter   ファイルフィルター ※拡張子に合致しないファイルは、索引から復元したディレクトリでは属性を取得しない
+     * @param listener 進捗通知先
+     * @param indexDir 索引の保存先
+     */
+    protected FileScanner(ScanFilter filter, Listener listener, Path indexDir) {
+        this.matcher = filter;
+        this.listener = listener;
+        this.mode = Mode.INDEXED;
+        this.parallelism = 1;
+        this.candidate = filter::isMatchedExtension;
+        this.indexDir = indexDir;
+    }
+
+    /**
+     * 走査モードに応じた生成
+     *
+     * @param filter      ファイルフィルター
+     * @param listener    進捗通知先
+     * @param mode        走査モード
+     * @param parallelism 並列走査のスレッド数
+     * @param indexDir    索引付き走査の索引の保存先
+     * @return ディレクトリ走査
+     */
+    static FileScanner create(ScanFilter filter, Listener listener, Mode mode, int parallelism, Path indexDir) {
+        if (mode == Mode.INDEXED) {
+            return new FileScanner(filter, listener, indexDir);
+        }
+        return new FileScanner(filter, listener, mode, parallelism);
+    }
+
+    /**
+     * 作業ディレクトリの検証
+     *
+     * @param workDir 作業フォルダパス
+     * @return 作業ディレクトリ
+     * @throws GZipException 作業ディレクトリとして使用できない
+     */
+    public static Path resolveWorkDir(String workDir) throws GZipException {
+        if (workDir.isEmpty()) {
+            throw new GZipException("作業フォルダパスは入力が必須です。");
+        }
+
+        // 末尾が”/”は除去する
+        workDir = workDir.replaceAll("/+$", "");
+
+        // 作業ディレクトリ
+        Path startPath = Paths.get(workDir);
+
+        if (!Files.isDirectory(startPath)) {
+            // フォルダではない
+            throw new GZipException("作業フォルダパスを入力してください");
+        }
+        if (Files.notExists(startPath)) {
+            // 存在しないフォルダ・ファイルは処理終了
+            throw new GZipException("存在しない作業フォルダパスです。");
+        }
+
+        Path rootPath = startPath.getRoot();
+        if (!Objects.isNull(rootPath) && rootPath.toFile().getPath().equals(workDir)) {
+            // ドライブ指定の場合は処理終了
+            throw new GZipException("ドライブの指定はできません。");
+        }
+        return startPath;
+    }
+
+    /**
+     * 作業ディレクトリ直下のエントリ数を取得
+     *
+     * @param startPath 作業ディレクトリ
+     * @return エントリ数
+     * @throws IOException 読み込みエラー
+     */
+    public static int countEntries(Path startPath) throws IOException {
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(startPath)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        metrics.record(GZipMetrics.Phase.COUNT, start);
+        return count;
+    }
+
+    /**
+     * 走査
+     *
+     * @param startPath 作業ディレクトリ
+     * @return フィルターに合致したファイル郡
+     * @throws IOException 読み込みエラー
+     */
+    public List<ScannedFile> scan(Path startPath) throws IOException {
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        visitedFiles.reset();
+        filterNanos.reset();
+
+        List<ScannedFile> result;
+        if (mode == Mode.PARALLEL) {
+            result = scanParallel(startPath);
+        } else if (mode == Mode.INDEXED) {
+            result = scanIndexed(startPath);
+        } else {
+            result = scanSequential(startPath);
+        }
+        metrics.recordScan(start, visitedFiles.sum(), result.size(), filterNanos.sum());
+        return result;
+    }
+
+    /**
+     * 通常ファイルの訪問を通知し、検索条件で判定
+     *
+     * @param file  ファイル
+     * @param attrs ファイル属性 ※リンク先の属性
+     * @return 合致したらtrue
+     */
+    private boolean test(Path file, BasicFileAttributes attrs) {
+        visitedFiles.increment();
+        listener.visited(file, attrs);
+
+        long start = System.nanoTime();
+        boolean matched = matcher.test(file, attrs);
+        filterNanos.add(System.nanoTime() - start);
+        return matched;
+    }
+
+    /**
+     * 逐次走査
+     *
+     * @param startPath 作業ディレクトリ
+     * @return フィルターに合致したファイル郡
+     * @throws IOException 読み込みエラー
+     */
+    private List<ScannedFile> scanSequential(Path startPath) throws IOException {
+        int total = countEntries(startPath);
+        List<ScannedFile> result = new ArrayList<>();
+
+        Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
+            /** 作業ディレクトリからの深さ */
+            private int depth;
+
+            /** 走査完了した直下のエントリ数 */
+            private int done;
+
+            @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                depth++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isSymbolicLink()) {
+                    // リンク先の属性で判定する
+                    attrs = readTargetAttributes(file);
+                }
+                if (attrs != null && attrs.isRegularFile()) {
+                    if (test(file, attrs)) {
+                        ScannedFile scannedFile = new ScannedFile(file, attrs);
+                        result.add(scannedFile);
+                        listener.matched(scannedFile);
+                    }
+                }
+                if (depth == 1) {
+                    listener.progress(++done, total);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                if (--depth == 1) {
+                    listener.progress(++done, total);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * 並列走査
+     *
+     * @param startPath 作業ディレクトリ
+     * @return フィルターに合致したファイル郡
+     * @throws IOException 読み込みエラー
+     */
+    private List<ScannedFile> scanParallel(Path startPath) throws IOException {
+        Progress progress = new Progress(countEntries(startPath));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new DirectoryTask(startPath, progress));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** 並列走査の進捗 */
+    private static class Progress {
+        /** 直下のエントリ数 */
+        private final int total;
+
+        /** 走査完了した直下のエントリ数 */
+        private int done;
+
+        private Progress(int total) {
+            this.total = total;
+        }
+    }
+
+    /**
+     * 1ディレクトリ分の走査タスク
+     * <p>
+     * サブディレクトリは子タスクとしてフォークし、結果はディレクトリ内のエントリ順に連結する。
+     * これにより {@link Files#walkFileTree} と同じ深さ優先の順序になる。
+     */
+    private class DirectoryTask extends RecursiveTask<List<ScannedFile>> {
+        private final Path dir;
+
+        /** 作業ディレクトリのタスクのみ進捗を持つ */
+        private final Progress progress;
+
+        /**
+         * @param dir      ディレクトリ
+         * @param progress 進捗 ※サブディレクトリのタスクはnull
+         */
+        private DirectoryTask(Path dir, Progress progress) {
+            this.dir = dir;
+            this.progress = progress;
+        }
+
+        @Override protected List<ScannedFile> compute() {
+            // ファイルの結果リストとサブディレクトリのタスクをエントリ順に保持
+            List<Object> segments = new ArrayList<>();
+            List<ScannedFile> files = null;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        DirectoryTask task = new DirectoryTask(entry, null);
+                        task.fork();
+                        segments.add(task);
+                        files = null;
+                        continue;
+                    }
+                    if (attrs.isSymbolicLink()) {
+                        // リンク先の属性で判定する
+                        attrs = readTargetAttributes(entry);
+                    }
+                    if (attrs != null && attrs.isRegularFile()) {
+                        if (test(entry, attrs)) {
+                            if (files == null) {
+                                files = new ArrayList<>();
+                                segments.add(files);
+                            }
+                            files.add(new ScannedFile(entry, attrs));
+                        }
+                    }
+                    progressed();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            List<ScannedFile> result = new ArrayList<>();
+            for (Object segment : segments) {
+                List<ScannedFile> list;
+                if (segment instanceof DirectoryTask) {
+                    list = ((DirectoryTask) segment).join();
+                } else {
+                    @SuppressWarnings("unchecked") List<ScannedFile> segmentFiles = (List<ScannedFile>) segment;
+                    list = segmentFiles;
+                }
+                result.addAll(list);
+
+                if (progress != null) {
+                    // 作業ディレクトリのタスクは先頭から確定した分を通知する
+                    list.forEach(listener::matched);
+                    if (segment instanceof DirectoryTask) {
+                        progressed();
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 直下のエントリ1件分の進捗を通知
+         */
+        private void progressed() {
+            if (progress != null) {
+                listener.progress(++progress.done, progress.total);
+            }
+        }
+    }
+
+    /**
+     * 索引付き走査
+     * <p>
+     * 最終更新日時が前回から変わっていないディレクトリはエントリの一覧を読み込まず、索引のエントリを同じ順序で辿る。
+     * その場合、拡張子に合致するファイルのみ属性を取得して判定する(内容の変更ではディレクトリの最終更新日時が変わらないため)。
+     * サブディレクトリは最終更新日時の確認のため全て訪問する。走査後に索引を更新する。
+     *
+     * @param startPath 作業ディレクトリ
+     * @return フィルターに合致したファイル郡
+     * @throws IOException 読み込みエラー
+     */
+    private List<ScannedFile> scanIndexed(Path startPath) throws IOException {
+        long scannedAt = System.currentTimeMillis();
+        ScanIndex index = ScanIndex.load(indexDir, startPath);
+        List<ScannedFile> result = new ArrayList<>();
+        ScanIndex.Node root = scanIndexed(index, startPath, index.getRoot(), result, true);
+        index.save(scannedAt, root);
+        return result;
+    }
+
+    /**
+     * 1ディレクトリ分の索引付き走査
+     *
+     * @param index    索引
+     * @param dir      ディレクトリ
+     * @param oldNode  前回のディレクトリの索引 ※ない場合はnull
+     * @param result   フィルターに合致したファイルの追加先
+     * @param topLevel 作業ディレクトリか ※進捗を通知する
+     * @return 今回のディレクトリの索引
+     * @throws IOException 読み込みエラー
+     */
+    private ScanIndex.Node scanIndexed(ScanIndex index, Path dir, ScanIndex.Node oldNode, List<ScannedFile> result, boolean topLevel)
+            throws IOException {
+        long lastModified = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+        if (index.isUnchanged(oldNode, lastModified)) {
+            for (int i = 0; i < oldNode.size(); i++) {
+                String name = oldNode.getName(i);
+                Path entry = dir.resolve(name);
+                if (oldNode.getType(i) == ScanIndex.TYPE_DIRECTORY) {
+                    scanIndexed(index, entry, oldNode.getChild(name), result, false);
+                } else if (candidate.test(name)) {
+                    visitIndexed(entry, Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS), result);
+                }
+                if (topLevel) {
+                    listener.progress(i + 1, oldNode.size());
+                }
+            }
+            // 変わっていないため、前回の索引をそのまま使用する
+            return oldNode;
+        }
+
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            stream.forEach(entries::add);
+        }
+        ScanIndex.Node node = new ScanIndex.Node(lastModified);
+        for (int i = 0; i < entries.size(); i++) {
+            Path entry = entries.get(i);
+            String name = entry.getFileName().toString();
+            BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attrs.isDirectory()) {
+                ScanIndex.Node oldChild = oldNode == null ? null : oldNode.getChild(name);
+                node.add(name, ScanIndex.TYPE_DIRECTORY, scanIndexed(index, entry, oldChild, result, false));
+            } else {
+                node.add(name, ScanIndex.TYPE_FILE, null);
+                visitIndexed(entry, attrs, result);
+            }
+            if (topLevel) {
+                listener.progress(i + 1, entries.size());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 索引付き走査での1ファイル分の判定
+     *
+     * @param file   ファイル
+     * @param attrs  ファイル属性 ※シンボリックリンク自体の属性
+     * @param result フィルターに合致したファイルの追加先
+     */
+    private void visitIndexed(Path file, BasicFileAttributes attrs, List<ScannedFile> result) {
+        if (attrs.isSymbolicLink()) {
+            // リンク先の属性で判定する
+            attrs = readTargetAttributes(file);
+        }
+        if (attrs != null && attrs.isRegularFile()) {
+            if (test(file, attrs)) {
+                ScannedFile scannedFile = new ScannedFile(file, attrs);
+                result.add(scannedFile);
+                listener.matched(scannedFile);
+            }
+        }
+    }
+
+    /**
+     * シンボリックリンク先の属性を取得
+     *
+     * @param link シンボリックリンク
+     * @return リンク先の属性(リンク切れの場合はnull)
+     */
+    private static BasicFileAttributes readTargetAttributes(Path link) {
+        try {
+            return Files.readAttributes(link, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * ファイル一覧テーブルのモデル
+ * <p>
+ * 行毎のオブジェクトを持たず、列毎にプリミティブ配列で保持する(SLはBitSet、サイズ・更新日時はlong[])。
+ * ディレクトリは辞書化し、同じディレクトリのファイルは共通の文字列を参照する。
+ * 更新日時・サイズは数値のまま返し、表示文字列への変換はセルの描画時にレンダラーで行う。
+ * SL選択ファイルの件数・合計サイズはSLの変更時に差分で更新するため、全行を再集計しない。
+ * 行は検索中に {@link #addRows(List)} で追加でき、ライブ更新の変更は {@link #applyChanges(List, Set)} で反映する。
+ */
+class FileTableModel extends AbstractTableModel {
+
+    enum Column {
+        SL(0, "SL", Boolean.class),
+        DIR(1, "ディレクトリ", String.class),
+        FILE_NAME(2, "ファイル名", String.class),
+        UPDATE_DATE(3, "更新日時", Long.class),
+        SIZE(4, "サイズ", Long.class);
+
+        final int columnNum;
+        private final String columnName;
+        private final Class<?> columnClass;
+
+        Column(int columnNum, String columnName, Class<?> columnClass) {
+            this.columnNum = columnNum;
+            this.columnName = columnName;
+            this.columnClass = columnClass;
+        }
+
+        private static Column getByColumnNum(int columnNum) {
+            return values()[columnNum];
+        }
+    }
+
+    /** 配列の初期容量 */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** 行数 */
+    private int rowCount;
+
+    /** SL */
+    private final BitSet sl = new BitSet();
+
+    /** ディレクトリ番号 ※directoriesの添字 */
+    private int[] dirIds = new int[INITIAL_CAPACITY];
+
+    private String[] fileNames = new String[INITIAL_CAPACITY];
+
+    /** 最終更新日時(エポックミリ秒) */
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+
+    private long[] sizes = new long[INITIAL_CAPACITY];
+
+    /** ディレクトリの辞書 */
+    private final List<String> directories = new ArrayList<>();
+    private final Map<String, Integer> directoryIds = new HashMap<>();
+
+    /** 追加する行のSL ※全SL設定で変わる */
+    private boolean defaultSl;
+
+    /** ディレクトリ・ファイル名が最長の行 ※カラム幅の算出用 */
+    private int longestDirRow = -1;
+    private int longestFileNameRow = -1;
+
+    /** 全ファイルの合計サイズ */
+    private long totalSize;
+
+    /** SL選択ファイルの件数・合計サイズ */
+    private int selectedCount;
+    private long selectedSize;
+
+    /**
+     * @param fileList  検索で見つかったファイル郡
+     * @param defaultSl SLのデフォルト値
+     */
+    protected FileTableModel(List<ScannedFile> fileList, boolean defaultSl) {
+        this.defaultSl = defaultSl;
+        addRows(fileList);
+    }
+
+    /**
+     * 行の追加 ※変更通知は1回のみ
+     *
+     * @param fileList 検索で見つかったファイル郡
+     */
+    public void addRows(List<ScannedFile> fileList) {
+        if (fileList.isEmpty()) {
+            return;
+        }
+        int firstRow = rowCount;
+        ensureCapacity(rowCount + fileList.size());
+        for (ScannedFile file : fileList) {
+            addRow(file);
+        }
+        fireTableRowsInserted(firstRow, rowCount - 1);
+    }
+
+    private void addRow(ScannedFile file) {
+        Path path = file.getPath();
+        int row = rowCount++;
+        ensureCapacity(rowCount);
+        dirIds[row] = getDirectoryId(path.getParent().toString());
+        fileNames[row] = path.getFileName().toString();
+        lastModified[row] = file.getLastModified();
+        sizes[row] = file.getSize();
+        sl.set(row, defaultSl);
+        updateTotals(row);
+    }
+
+    private int getDirectoryId(String dir) {
+        return directoryIds.computeIfAbsent(dir, key -> {
+            directories.add(key);
+            return directories.size() - 1;
+        });
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= sizes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, sizes.length + (sizes.length >> 1));
+        dirIds = Arrays.copyOf(dirIds, newCapacity);
+        fileNames = Arrays.copyOf(fileNames, newCapacity);
+        lastModified = Arrays.copyOf(lastModified, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+    }
+
+    @Override public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override public int getColumnCount() {
+        return Column.values().length;
+    }
+
+    @Override public String getColumnName(int column) {
+        return Column.getByColumnNum(column).columnName;
+    }
+
+    @Override public Class<?> getColumnClass(int column) {
+        return Column.getByColumnNum(column).columnClass;
+    }
+
+    @Override public boolean isCellEditable(int row, int column) {
+        return Column.SL.columnNum == column;
+    }
+
+    @Override public Object getValueAt(int row, int column) {
+        switch (Column.getByColumnNum(column)) {
+            case SL:
+                return sl.get(row);
+            case DIR:
+                return directories.get(dirIds[row]);
+            case FILE_NAME:
+                return fileNames[row];
+            case UPDATE_DATE:
+                return lastModified[row];
+            case SIZE:
+                return sizes[row];
+            default:
+                throw new GZipRuntimeException("該当するカラムが見つかりません。(" + column + ")");
+        }
+    }
+
+    @Override public void setValueAt(Object value, int row, int column) {
+        if (Column.SL.columnNum != column) {
+            return;
+        }
+        boolean selected = (Boolean) value;
+        if (sl.get(row) == selected) {
+            return;
+        }
+        sl.set(row, selected);
+        selectedCount += selected ? 1 : -1;
+        selectedSize += selected ? sizes[row] : -sizes[row];
+        fireTableCellUpdated(row, column);
+    }
+
+    /**
+     * 全行のSLを設定 ※変更通知は1回のみ。以降に追加する行にも適用する
+     *
+     * @param selected SL
+     */
+    public void setAllSl(boolean selected) {
+        defaultSl = selected;
+        if (rowCount == 0) {
+            return;
+        }
+        sl.set(0, rowCount, selected);
+        selectedCount = selected ? rowCount : 0;
+        selectedSize = selected ? totalSize : 0;
+        fireTableChanged(new TableModelEvent(this, 0, rowCount - 1, Column.SL.columnNum));
+    }
+
+    /**
+     * 変更の反映 ※全行を1回走査して詰め直し、変更通知は1回のみ
+     * <p>
+     * 既存の行は更新日時・サイズを更新してSLを保持し、新しいファイルは末尾に追加する。
+     *
+     * @param matched 検索条件に合致するファイル郡
+     * @param removed 除くパス ※ディレクトリの場合は配下の全ての行を除く
+     */
+    public void applyChanges(List<ScannedFile> matched, Set<Path> removed) {
+        // ディレクトリ番号毎の、除くディレクトリか・除くファイル名・更新するファイル
+        BitSet removedDirs = new BitSet();
+        Map<Integer, Set<String>> removedNames = new HashMap<>();
+        Map<Integer, Map<String, ScannedFile>> updated = new HashMap<>();
+        for (int dirId = 0; dirId < directories.size(); dirId++) {
+            if (isUnder(Paths.get(directories.get(dirId)), removed)) {
+                removedDirs.set(dirId);
+            }
+        }
+        for (Path path : removed) {
+            Integer dirId = directoryIds.get(path.getParent().toString());
+            if (dirId != null) {
+                removedNames.computeIfAbsent(dirId, key -> new HashSet<>()).add(path.getFileName().toString());
+            }
+        }
+        List<ScannedFile> added = new ArrayList<>();
+        for (ScannedFile file : matched) {
+            Integer dirId = directoryIds.get(file.getPath().getParent().toString());
+            if (dirId == null) {
+                added.add(file);
+            } else {
+                updated.computeIfAbsent(dirId, key -> new HashMap<>()).put(file.getPath().getFileName().toString(), file);
+            }
+        }
+
+        // 除く行を詰めながら、更新・再集計する
+        int newCount = 0;
+        totalSize = 0;
+        selectedCount = 0;
+        selectedSize = 0;
+        longestDirRow = -1;
+        longestFileNameRow = -1;
+        for (int row = 0; row < rowCount; row++) {
+            int dirId = dirIds[row];
+            String fileName = fileNames[row];
+            Set<String> names = removedNames.get(dirId);
+            if (removedDirs.get(dirId) || (names != null && names.contains(fileName))) {
+                continue;
+            }
+            Map<String, ScannedFile> files = updated.get(dirId);
+            ScannedFile file = files == null ? null : files.remove(fileName);
+            boolean selected = sl.get(row);
+
+            int newRow = newCount++;
+            dirIds[newRow] = dirId;
+            fileNames[newRow] = fileName;
+            lastModified[newRow] = file == null ? lastModified[row] : file.getLastModified();
+            sizes[newRow] = file == null ? sizes[row] : file.getSize();
+            sl.set(newRow, selected);
+            updateTotals(newRow);
+        }
+        Arrays.fill(fileNames, newCount, rowCount, null);
+        sl.clear(newCount, rowCount);
+        rowCount = newCount;
+
+        // 一覧になかったファイルは追加する
+        updated.values().forEach(files -> added.addAll(files.values()));
+        ensureCapacity(rowCount + added.size());
+        added.forEach(this::addRow);
+
+        fireTableDataChanged();
+    }
+
+    private static boolean isUnder(Path dir, Set<Path> removed) {
+        for (Path path = dir; path != null; path = path.getParent()) {
+            if (removed.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 既存の行の集計 ※ディレクトリ・ファイル名の最長の行、合計サイズ、SL選択ファイルの件数・合計サイズ
+     *
+     * @param row 行
+     */
+    private void updateTotals(int row) {
+        if (longestDirRow < 0 || directories.get(dirIds[row]).length() > directories.get(dirIds[longestDirRow]).length()) {
+            longestDirRow = row;
+        }
+        if (longestFileNameRow < 0 || fileNames[row].length() > fileNames[longestFileNameRow].length()) {
+            longestFileNameRow = row;
+        }
+        totalSize += sizes[row];
+        if (sl.get(row)) {
+            selectedCount++;
+            selectedSize += sizes[row];
+        }
+    }
+
+    /**
+     * 文字列が最長の行の取得
+     *
+     * @param column ディレクトリまたはファイル名
+     * @return 行 ※行がない場合は-1
+     */
+    public int getLongestRow(Column column) {
+        switch (column) {
+            case DIR:
+                return longestDirRow;
+            case FILE_NAME:
+                return longestFileNameRow;
+            default:
+                throw new GZipRuntimeException("文字列のカラムではありません。(" + column + ")");
+        }
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public long getSelectedSize() {
+        return selectedSize;
+    }
+
+    /**
+     * SL選択ファイル郡の取得
+     *
+     * @return SL選択ファイルのパス ※行の順
+     */
+    public List<Path> getSelectedPaths() {
+        List<Path> pathList = new ArrayList<>(selectedCount);
+        for (int row = sl.nextSetBit(0); row >= 0 && row < rowCount; row = sl.nextSetBit(row + 1)) {
+            pathList.add(getPath(row));
+        }
+        return pathList;
+    }
+
+    public boolean isSl(int row) {
+        return sl.get(row);
+    }
+
+    public long getSize(int row) {
+        return sizes[row];
+    }
+
+    public Path getPath(int row) {
+        return Paths.get(directories.get(dirIds[row]), fileNames[row]);
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * コマンドラインでの検索・圧縮・削除(バッチモード)
+ * <p>
+ * 画面と同じ検索条件・圧縮処理を引数または設定ファイル(G-Zip.properties)の値で実行し、結果を標準出力、終了コードで返す。
+ * 画面部品(Swing・AWT)のクラスは読み込まないため、ディスプレイのないサーバーのcron等から実行できる。
+ * <pre>
+ * java -cp G-Zip.jar GZipBatch --workDir=/var/log/app --extension=log,bak --lastModifiedDate=ONE_YEAR_AGO --format=tar.gz --delete
+ * </pre>
+ * 引数で指定した値は設定ファイルより優先し、設定ファイルには保存しない。
+ */
+public class GZipBatch {
+    /** 終了コード:正常終了 ※対象ファイルが0件の場合を含む */
+    static final int EXIT_SUCCESS = 0;
+
+    /** 終了コード:検索・圧縮・削除の失敗 */
+    static final int EXIT_FAILURE = 1;
+
+    /** 終了コード:引数・設定値の誤り ※検索・圧縮の前に判定する */
+    static final int EXIT_USAGE = 2;
+
+    /** 引数の接頭辞 */
+    private static final String OPTION_PREFIX = "--";
+
+    private enum Option {
+        CONFIG("config", null, "設定ファイル (デフォルト: " + Settings.SETTING_PROPERTIES + ")"),
+        WORK_DIR("workDir", Settings.PropKeys.WORK_DIR, "作業フォルダパス"),
+        EXTENSION("extension", Settings.PropKeys.EXTENSION, "対象拡張子 ※カンマ区切り (例: log,bak)"),
+        LAST_MODIFIED_DATE("lastModifiedDate", Settings.PropKeys.LAST_MODIFIED_DATE, "最終更新日 (例: ONE_YEAR_AGO、1年以上経過)"),
+        FORMAT("format", Settings.PropKeys.COMPRESS_FORMAT, "圧縮形式 (zip / gz / tar.gz)"),
+        LEVEL("level", Settings.PropKeys.COMPRESS_LEVEL, "圧縮レベル (fast / default / max / auto)"),
+        VOLUME_SIZE("volumeSize", Settings.PropKeys.COMPRESS_VOLUME_SIZE, "zipの分割サイズ (例: 4G) ※圧縮後のサイズで名前.001.zip、名前.002.zip…に分割"),
+        PARALLELISM("parallelism", Settings.PropKeys.COMPRESS_PARALLELISM, "圧縮スレッド数"),
+        OUTPUT("output", null, "圧縮ファイル (デフォルト: 作業フォルダ/yyyyMMddHHmmss.拡張子) ※gzは指定不可"),
+        LOG_LEVEL("logLevel", Settings.PropKeys.LOG_LEVEL, "ログレベル (INFO / FINE) ※FINEはファイル毎に出力"),
+        PIPELINED_DELETE("pipelinedDelete", Settings.PropKeys.COMPRESS_PIPELINED_DELETE, "圧縮と並行して元ファイルを削除する (true / false) ※zipのみ"),
+        DEDUP("dedup", Settings.PropKeys.COMPRESS_DEDUP, "同じ内容のファイルを1エントリにまとめる (true / false) ※zipのみ。展開は --extract"),
+        DICTIONARY("dictionary", Settings.PropKeys.COMPRESS_DICTIONARY, "ローテーションしたログ(*.log.数値)を系列毎の共通辞書で圧縮する (true / false) ※zipのみ。独自の圧縮方式のため、展開は --extract のみ(他のツールでは展開不可)"),
+        VERIFY("verify", Settings.PropKeys.COMPRESS_VERIFY, "圧縮後に全エントリのCRC-32・サイズを検証する (true / false) ※zipのみ"),
+        EXTRACT("extract", null, "G-Zipで作成したzipを作業フォルダに展開する ※重複ファイル・辞書で圧縮したエントリを復元する"),
+        RECOVER("recover", null, "中断した並行削除のジャーナル(圧縮ファイル名.journal)から圧縮ファイルを復旧する"),
+        APPEND("append", null, "既存のzip(--output)に追記する ※同じ名前のエントリがある場合はエラー。--dedup・--dictionary とは併用不可"),
+        DELETE("delete", null, "圧縮後に元ファイルを削除する"),
+        HELP("help", null, "使い方を表示する");
+
+        private final String optionName;
+        private final Settings.PropKeys propKey;
+        private final String description;
+
+        Option(String optionName, Settings.PropKeys propKey, String description) {
+            this.optionName = optionName;
+            this.propKey = propKey;
+            this.description = description;
+        }
+
+        /**
+         * @return 値を取らない引数か
+         */
+        private boolean isFlag() {
+            return this == APPEND || this == DELETE || this == HELP;
+        }
+
+        private static Option getByOptionName(String optionName) throws GZipException {
+            for (Option option : values()) {
+                if (option.optionName.equals(optionName)) {
+                    return option;
+                }
+            }
+            throw new GZipException("不明な引数です。(" + OPTION_PREFIX + optionName + ")");
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * バッチ処理
+     *
+     * @param args 引数
+     * @param out  結果の出力先
+     * @param err  エラーの出力先
+     * @return 終了コード
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Map<Option, String> options;
+        try {
+            options = parse(args);
+        } catch (GZipException e) {
+            err.println(e.getMessage());
+            printUsage(err);
+            return EXIT_USAGE;
+        }
+        if (options.containsKey(Option.HELP)) {
+            printUsage(out);
+            return EXIT_SUCCESS;
+        }
+
+        try {
+            if (options.containsKey(Option.RECOVER)) {
+                recover(Paths.get(options.get(Option.RECOVER)), out);
+                return EXIT_SUCCESS;
+            }
+
+            // 引数・設定値の誤りは検索・圧縮の前に判定する
+            Request request;
+            try {
+                request = new Request(options);
+            } catch (GZipException e) {
+                err.println(e.getMessage());
+                printUsage(err);
+                return EXIT_USAGE;
+            }
+            execute(request, out);
+            return EXIT_SUCCESS;
+        } catch (InterruptedIOException e) {
+            err.println("圧縮中止: " + e.getMessage());
+        } catch (GZipException | GZipRuntimeException | IOException e) {
+            err.println("エラー: " + e.getMessage() + " (" + e.getClass().getName() + ")");
+        }
+        return EXIT_FAILURE;
+    }
+
+    /**
+     * 中断した並行削除の復旧
+     *
+     * @param journalFile ジャーナルファイル
+     * @param out         結果の出力先
+     * @throws IOException 入出力エラー
+     */
+    private static void recover(Path journalFile, PrintStream out) throws IOException {
+        List<Path> deleted = DeleteJournal.recover(journalFile, Charset.defaultCharset());
+        out.println("復旧: " + journalFile);
+        for (Path path : deleted) {
+            out.println((Files.exists(path) ? "未削除: " : "削除済み: ") + path);
+        }
+    }
+
+    /**
+     * 引数の解析 ※「--名前=値」または「--名前」
+     *
+     * @param args 引数
+     * @return 指定された引数
+     * @throws GZipException 引数の誤り
+     */
+    private static Map<Option, String> parse(String[] args) throws GZipException {
+        Map<Option, String> options = new EnumMap<>(Option.class);
+        for (String arg : args) {
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                throw new GZipException("引数は「" + OPTION_PREFIX + "名前=値」の形式で指定してください。(" + arg + ")");
+            }
+            int eq = arg.indexOf('=');
+            String name = arg.substring(OPTION_PREFIX.length(), eq < 0 ? arg.length() : eq);
+            Option option = Option.getByOptionName(name);
+            if (option.isFlag() != (eq < 0)) {
+                throw new GZipException(option.isFlag() ? "値は指定できません。(" + arg + ")" : "値を指定してください。(" + arg + ")");
+            }
+            options.put(option, eq < 0 ? "" : arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /**
+     * 引数・設定値を検証した実行内容
+     */
+    private static final class Request {
+        private final Settings settings;
+        private final Path startPath;
+
+        /** 展開する圧縮ファイル ※展開しない場合はnull */
+        private final Path extractFile;
+
+        private List<String> extensions;
+        private DateLastModified dlm;
+        private OutputFormat format;
+        private CompressionLevel level;
+        private long volumeSize;
+        private FileScanner.Mode scanMode;
+        private int scanParallelism;
+        private int bufferSize;
+        private int parallelism;
+
+        /** 圧縮ファイル ※指定しない場合はnull */
+        private Path outputFile;
+        private boolean append;
+        private final boolean deleteOriginal;
+
+        /**
+         * @param options 引数
+         * @throws GZipException 引数・設定値の誤り
+         */
+        private Request(Map<Option, String> options) throws GZipException {
+            settings = Settings.load(Paths.get(options.getOrDefault(Option.CONFIG, Settings.SETTING_PROPERTIES)));
+            options.forEach((option, value) -> {
+                if (option.propKey != null) {
+                    settings.setProperty(option.propKey, value);
+                }
+            });
+            deleteOriginal = options.containsKey(Option.DELETE);
+            try {
+                settings.applyLogLevel();
+                startPath = FileScanner.resolveWorkDir(settings.getWorkDir());
+                if (options.containsKey(Option.EXTRACT)) {
+                    extractFile = Paths.get(options.get(Option.EXTRACT));
+                    return;
+                }
+                extractFile = null;
+
+                // 検索条件
+                extensions = Stream.of(settings.getExtension().split(Settings.SEPARATOR))
+                                   .map(String::trim)
+                                   .filter(ext -> !ext.isEmpty())
+                                   .collect(Collectors.toList());
+                if (extensions.isEmpty()) {
+                    throw new GZipException("対象拡張子を指定してください。");
+                }
+                String dateName = settings.getLastModifiedDate();
+                dlm = dateName.isEmpty() ? DateLastModified.TODAY : DateLastModified.getByName(dateName);
+                scanMode = settings.getScanMode();
+                scanParallelism = settings.getScanParallelism();
+
+                // 圧縮条件
+                format = settings.getCompressFormat();
+                level = settings.getCompressLevel();
+                volumeSize = settings.getCompressVolumeSize();
+                bufferSize = settings.getCompressBufferSize();
+                parallelism = settings.getCompressParallelism();
+                if (parallelism < 1) {
+                    throw new GZipException("並列数は1以上を指定してください。(" + parallelism + ")");
+                }
+                int minBufferSize = format == OutputFormat.GZIP ? 1 : ParallelDeflater.DICTIONARY_SIZE;
+                if (bufferSize < minBufferSize) {
+                    throw new GZipException("バッファサイズは" + minBufferSize + "以上を指定してください。(" + bufferSize + ")");
+                }
+                if (format == OutputFormat.GZIP && options.containsKey(Option.OUTPUT)) {
+                    throw new GZipException("ファイル毎のgzip圧縮では圧縮ファイルを指定できません。");
+                }
+                outputFile = options.containsKey(Option.OUTPUT) ? Paths.get(options.get(Option.OUTPUT)) : null;
+                append = options.containsKey(Option.APPEND);
+                if (append && (format != OutputFormat.ZIP || outputFile == null)) {
+                    throw new GZipException("追記はzip形式で圧縮ファイルを指定した場合のみ指定できます。");
+                }
+                if (append && (settings.isCompressDedup() || settings.isCompressDictionary())) {
+                    // 既存の重複ファイルの一覧・辞書の対応表と重複するため、追記では適用できない
+                    throw new GZipException("追記では --dedup・--dictionary を指定できません。");
+                }
+            } catch (GZipRuntimeException | IllegalArgumentException e) {
+                // 設定値の変換エラー
+                throw new GZipException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 検索・圧縮・削除
+     *
+     * @param request 実行内容
+     * @param out     結果の出力先
+     * @throws GZipException 検索の失敗
+     * @throws IOException   入出力エラー
+     */
+    private static void execute(Request request, PrintStream out) throws GZipException, IOException {
+        long start = System.nanoTime();
+
+        Settings settings = request.settings;
+        Path startPath = request.startPath;
+        if (request.extractFile != null) {
+            Path zipFile = request.extractFile;
+            int count = ZipExtractor.extract(zipFile, startPath);
+            out.println("展開: " + zipFile + " → " + startPath + " (" + count + "件)");
+            return;
+        }
+        List<String> extensions = request.extensions;
+        DateLastModified dlm = request.dlm;
+        OutputFormat format = request.format;
+        boolean append = request.append;
+        boolean deleteOriginal = request.deleteOriginal;
+
+        out.println("作業フォルダ: " + startPath);
+        out.println("検索条件: " + String.join(Settings.SEPARATOR, extensions) + " / " + dlm.getDateName());
+
+        // 検索
+        ScanProgress scanProgress = new ScanProgress();
+        FileScanner scanner = FileScanner.create(ScanFilter.create(extensions, dlm), scanProgress,
+                request.scanMode, request.scanParallelism, settings.getIndexDir());
+        List<ScannedFile> fileList = scanner.scan(startPath);
+        out.println(String.format("検索: %,d件 %dms (%,d件/s)"
+                , scanProgress.getVisitedFiles(), scanProgress.getElapsedMillis(), scanProgress.getFilesPerSecond()));
+        List<Path> pathList = fileList.stream().map(ScannedFile::getPath).collect(Collectors.toList());
+        long totalSize = fileList.stream().mapToLong(ScannedFile::getSize).sum();
+        out.println("対象ファイル: " + pathList.size() + "件 (" + showSize(totalSize) + ")");
+
+        if (pathList.isEmpty()) {
+            out.println("圧縮するファイルがありません");
+            return;
+        }
+
+        // 圧縮・削除
+        CompressProgress progress = new CompressProgress(pathList.size(), totalSize);
+        if (format == OutputFormat.GZIP) {
+            GzipCompressor compressor = new GzipCompressor(request.bufferSize, request.parallelism, request.level);
+            List<Path> gzList = compressor.compress(pathList, deleteOriginal, progress);
+
+            long gzSize = gzList.stream().map(Path::toFile).mapToLong(File::length).sum();
+            out.println("圧縮ファイル: " + gzList.size() + "件 (" + showSize(gzSize) + ")");
+        } else {
+            Path archiveFile = request.outputFile != null
+                    ? request.outputFile
+                    : startPath.resolve(getArchiveFileName() + format.getExtension());
+            if (!append && Files.exists(archiveFile)) {
+                // 定期実行で既存の圧縮ファイルを上書きしない
+                throw new GZipException("圧縮ファイルが既に存在します。(" + archiveFile + ")");
+            }
+
+            Archiver archiver = Archiver.create(format, startPath + File.separator, request.bufferSize,
+                    request.parallelism, request.level, request.volumeSize,
+                    settings.isCompressPipelinedDelete(), settings.isCompressVerify(), settings.isCompressDedup(),
+                    settings.isCompressDictionary());
+            for (Path file : archiver.archive(pathList, archiveFile, append, deleteOriginal, progress)) {
+                out.println("圧縮ファイル: " + file + " (" + showSize(Files.size(file)) + ")");
+            }
+        }
+        out.println("削除: " + (deleteOriginal ? pathList.size() + "件" : "なし"));
+        out.println("処理時間: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("使い方: java -cp G-Zip.jar GZipBatch [" + OPTION_PREFIX + "名前=値 ...]");
+        for (Option option : Option.values()) {
+            String name = OPTION_PREFIX + option.optionName + (option.isFlag() ? "" : "=値");
+            out.println(String.format("  %-24s %s", name, option.description));
+        }
+        out.println("指定しない項目は設定ファイルの値を使用する。");
+        out.println("終了コード: " + EXIT_SUCCESS + "=正常 " + EXIT_FAILURE + "=失敗 " + EXIT_USAGE + "=引数・設定値の誤り");
+    }
+
+    /**
+     * 圧縮ファイル名の取得
+     *
+     * @return 圧縮ファイル名(拡張子なし)
+     */
+    @SuppressWarnings("SpellCheckingInspection") private static String getArchiveFileName() {
+        DateTimeFormatter f = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+        return f.format(LocalDateTime.now());
+    }
+
+    private static String showSize(long size) {
+        return FileUtils.byteCountToDisplaySize(size);
+    }
+}
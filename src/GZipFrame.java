@@ -3,42 +3,34 @@ import com.intellij.uiDesigner.core.GridLayoutManager;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Insets;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -54,15 +46,16 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableModel;
 import org.apache.commons.io.FileUtils;
 
 public class GZipFrame extends JFrame {
@@ -78,129 +71,43 @@ public class GZipFrame extends JFrame {
     private JLabel lbl_totalSize;
     private JButton btn_folderSelect;
 
+    /** ファイル一覧 */
+    private FileTableModel tableModel = new FileTableModel(Collections.emptyList(), DEFAULT_SL);
+
+    /** 検索結果のライブ更新 ※ライブ更新しない場合はnull */
+    private LiveWatcher liveWatcher;
+
+    /** ライブ更新で変更を取りこぼし、再検索が必要か ※圧縮中は再検索しない */
+    private boolean liveRescanPending;
+
     /** テーブルの横幅 */
     private static final int TABLE_WIDTH = 910;
 
+    /** 検索中にテーブルへまとめて追加する件数 */
+    private static final int ROW_BATCH_SIZE = 1000;
+
+    /** カラム幅の算出に使用するサンプル行数 */
+    private static final int WIDTH_SAMPLE_SIZE = 500;
+
     /** SLのデフォルト値 */
     private static final boolean DEFAULT_SL = Boolean.TRUE;
 
-    /** コンボボックス表示の区切り文字 */
-    private static final String COMBO_BOX_SEPARATOR = ",";
+    /** 進捗表示の更新間隔(ミリ秒) */
+    private static final int PROGRESS_INTERVAL = 200;
 
-    /** 設定ファイル名 */
-    private static final String SETTING_PROPERTIES = "G-Zip.properties";
+    /** コンボボックス表示の区切り文字 */
+    private static final String COMBO_BOX_SEPARATOR = Settings.SEPARATOR;
 
     /** 設定ファイル */
-    private static final Properties settings = new Properties();
+    private static final Settings settings = Settings.load(Paths.get(Settings.SETTING_PROPERTIES));
 
-    /** 文字コード */
-    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final Logger LOGGER = Logger.getLogger(GZipFrame.class.getName());
 
     static {
-        Path configPath = Paths.get(SETTING_PROPERTIES);
-        if (Files.exists(configPath)) {
-            try (Reader reader = Files.newBufferedReader(configPath, CHARSET)) {
-                settings.load(reader);
-            } catch (NoSuchFileException e) {
-                throw new GZipRuntimeException(SETTING_PROPERTIES + " が見つかりません。", e);
-            } catch (IOException e) {
-                throw new GZipRuntimeException(e);
-            }
-        }
-    }
-
-    private enum PropKeys {
-        WORK_DIR("TextField.workDir"),
-        EXTENSION("ComboBox.extension"),
-        LAST_MODIFIED_DATE("ComboBox.lastModifiedDate");
-
-        private final String key;
-
-        PropKeys(String key) {
-            this.key = key;
-        }
-    }
-
-    private enum Column {
-        SL(0, "SL"),
-        DIR(1, "ディレクトリ"),
-        FILE_NAME(2, "ファイル名"),
-        UPDATE_DATE(3, "更新日時"),
-        SIZE(4, "サイズ");
-
-        private final int columnNum;
-        private final String columnName;
-
-        Column(int columnNum, String columnName) {
-            this.columnNum = columnNum;
-            this.columnName = columnName;
-        }
-
-        private static Object[] getColumnNames() {
-            return Arrays.stream(Column.values()).map(column -> column.columnName).toArray();
-        }
-    }
-
-    private enum Extension {
-        LOG("log"),
-        TMP("tmp"),
-        BAK("bak"),
-        CSV("csv"),
-        TXT("txt");
-
-        private final String extName;
-
-        Extension(String extName) {
-            this.extName = extName;
-        }
-    }
-
-    private enum DateLastModified {
-        TODAY(0, "全て"),
-        FIVE_YEARS_AGO(-60, "5年以上経過"),
-        FOUR_YEARS_AGO(-48, "4年以上経過"),
-        THREE_YEARS_AGO(-36, "3年以上経過"),
-        TWO_YEARS_AGO(-24, "2年以上経過"),
-        ONE_YEAR_AGO(-12, "1年以上経過"),
-        HALF_YEAR_AGO(-6, "半年以上経過"),
-        ONE_MONTH_AGO(-3, "3ヶ月以上経過");
-
-        private final int months;
-        private final String dateName;
-
-        DateLastModified(int months, String dateName) {
-            this.months = months;
-            this.dateName = dateName;
-        }
-
-        private static DateLastModified getByDateName(String dateName) {
-            for (DateLastModified dlm : values()) {
-                if (dlm.dateName.equals(dateName)) {
-                    return dlm;
-                }
-            }
-            throw new GZipRuntimeException("該当する日付が見つかりません。(" + dateName + ")");
-        }
-
-        private static String[] getDateNames() {
-            DateLastModified[] dateLastModified = values();
-            int len = dateLastModified.length;
-            String[] dateNames = new String[len];
-            for (int i = 0; i < len; i++) {
-                dateNames[i] = dateLastModified[i].dateName;
-            }
-            return dateNames;
-        }
-    }
+        settings.applyLogLevel();
 
-    private static class Chunk {
-        private final int num;
-        private final Path path;
-
-        private Chunk(int num, Path path) {
-            this.num = num;
-            this.path = path;
-        }
+        // 計測値をJMXで公開
+        GZipMetrics.get();
     }
 
     /**
@@ -211,7 +118,7 @@ public class GZipFrame extends JFrame {
         setTitle("G-Zip");
 
         // 作業ディレクトリの取得
-        txt_workDir.setText(getWorkDir());
+        txt_workDir.setText(settings.getWorkDir());
 
         // 「参照」ボタン押下時のロジック
         btn_folderSelect.addActionListener(e -> folderSelect());
@@ -286,12 +193,12 @@ public class GZipFrame extends JFrame {
 
     private void createExtCmbBx() {
         // 拡張子の取得
-        List<String> extList = Stream.of(getExtension().split(COMBO_BOX_SEPARATOR)).collect(Collectors.toList());
+        List<String> extList = Stream.of(settings.getExtension().split(COMBO_BOX_SEPARATOR)).collect(Collectors.toList());
 
         CheckableItem[] items = new CheckableItem[Extension.values().length];
         for (int i = 0; i < Extension.values().length; i++) {
             Extension ext = Extension.values()[i];
-            items[i] = new CheckableItem(ext.extName, extList.contains(ext.extName));
+            items[i] = new CheckableItem(ext.getExtName(), extList.contains(ext.getExtName()));
         }
         cmb_extension = new CheckedComboBox<>(new DefaultComboBoxModel<>(items));
     }
@@ -300,51 +207,30 @@ public class GZipFrame extends JFrame {
         // 更新日の取得
         //noinspection UndesirableClassUsage
         cmb_lastModifiedDate = new JComboBox<>(DateLastModified.getDateNames());
-        cmb_lastModifiedDate.setSelectedItem(getLastModifiedDate());
+        cmb_lastModifiedDate.setSelectedItem(settings.getLastModifiedDate());
     }
 
     private void storeInput() {
-        settings.setProperty(PropKeys.EXTENSION.key, getCmbBxText(cmb_extension));
-        settings.setProperty(PropKeys.LAST_MODIFIED_DATE.key, (String) cmb_lastModifiedDate.getSelectedItem());
-        settings.setProperty(PropKeys.WORK_DIR.key, Paths.get(txt_workDir.getText()).normalize().toString());
-
-        Path configPath = Paths.get(SETTING_PROPERTIES);
-
-        if (Files.notExists(configPath)) {
-            // 設定ファイルが存在しない場合は新規作成する
-            try {
-                Files.createFile(configPath);
-            } catch (IOException e) {
-                throw new GZipRuntimeException(e);
-            }
-        }
-
-        try (Writer writer = Files.newBufferedWriter(configPath, CHARSET, StandardOpenOption.TRUNCATE_EXISTING)) {
-            settings.store(writer, null);
-        } catch (IOException e) {
-            throw new GZipRuntimeException(e);
-        }
-    }
-
-    private String getWorkDir() {
-        return settings.getProperty(PropKeys.WORK_DIR.key, System.getProperty("user.dir"));
-    }
-
-    private String getExtension() {
-        return settings.getProperty(PropKeys.EXTENSION.key, "");
-    }
+        settings.setProperty(Settings.PropKeys.EXTENSION, getCmbBxText(cmb_extension));
+        settings.setProperty(Settings.PropKeys.LAST_MODIFIED_DATE, (String) cmb_lastModifiedDate.getSelectedItem());
+        settings.setProperty(Settings.PropKeys.WORK_DIR, Paths.get(txt_workDir.getText()).normalize().toString());
 
-    private String getLastModifiedDate() {
-        return settings.getProperty(PropKeys.LAST_MODIFIED_DATE.key, "");
+        // 設定ファイルへ保存
+        settings.store();
     }
 
     private void setFileTable(boolean showErrorMessage) {
+        // 前回の検索結果の監視を終了
+        stopLiveWatcher();
+
+        boolean started = false;
         try {
             // 部品非活性
             setEnabledAll(false);
 
-            // 一覧テーブルの構築
+            // 一覧テーブルの構築 ※検索終了時に部品を活性にする
             createFileTable();
+            started = true;
         } catch (GZipException e) {
             // 一覧テーブルを初期化
             createFileTable(Collections.emptyList());
@@ -354,8 +240,10 @@ public class GZipFrame extends JFrame {
                 JOptionPane.showMessageDialog(this, e.getMessage(), e.getClass().getName(), JOptionPane.ERROR_MESSAGE);
             }
         } finally {
-            // 部品活性
-            setEnabledAll(true);
+            if (!started) {
+                // 部品活性
+                setEnabledAll(true);
+            }
         }
     }
 
@@ -364,188 +252,240 @@ public class GZipFrame extends JFrame {
     }
 
     private void createFileTable() throws GZipException {
-        String workDir = txt_workDir.getText();
-
-        if (workDir.isEmpty()) {
-            throw new GZipException("作業フォルダパスは入力が必須です。");
-        }
-
-        // 末尾が”/”は除去する
-        workDir = workDir.replaceAll("/+$", "");
-
         // 作業ディレクトリ
-        Path startPath = Paths.get(workDir);
-
-        if (!Files.isDirectory(startPath)) {
-            // フォルダではない
-            throw new GZipException("作業フォルダパスを入力してください");
-        }
-        if (Files.notExists(startPath)) {
-            // 存在しないフォルダ・ファイルは処理終了
-            throw new GZipException("存在しない作業フォルダパスです。");
-        }
+        Path startPath = FileScanner.resolveWorkDir(txt_workDir.getText());
 
-        Path rootPath = startPath.getRoot();
-        if (!Objects.isNull(rootPath) && rootPath.toFile().getPath().equals(workDir)) {
-            // ドライブ指定の場合は処理終了
-            throw new GZipException("ドライブの指定はできません。");
+        // 直下のエントリ数を取得
+        int entryCount;
+        try {
+            entryCount = FileScanner.countEntries(startPath);
+        } catch (IOException e) {
+            throw new GZipException(e);
         }
-
-        // ファイル数を取得
-        int fileCount = getFileCount(startPath);
-        if (fileCount == 0) {
+        if (entryCount == 0) {
             // ファイル数が0件の場合は処理終了する
             throw new GZipException("ファイル数が0件です。");
         }
 
+        // 検索条件
+        ScanFilter filter = createScanFilter();
+
+        // 走査モード
+        FileScanner.Mode scanMode = settings.getScanMode();
+        int parallelism = settings.getScanParallelism();
+        Path indexDir = settings.getIndexDir();
+
+        // ライブ更新 ※検索中の変更も反映するため、検索前に監視を登録する
+        LiveWatcher watcher = settings.isScanLive() ? createLiveWatcher(filter) : null;
+
         // 検索開始
         ProgressMonitor monitor = new ProgressMonitor(this, "検索中...", System.lineSeparator(), 0, 100);
         monitor.setMillisToDecideToPopup(0);
         monitor.setMillisToPopup(0);
         monitor.setProgress(0);
-        // 最大値の設定
-        monitor.setMaximum(fileCount);
-
-        SwingWorker<List<Path>, Chunk> sw = new SwingWorker<List<Path>, Chunk>() {
-
-            /** 処理が重たいバックグラウンド処理 */
-            @Override protected List<Path> doInBackground() {
-                setProgress(0);
-                publish(new Chunk(0, null));
 
-                // ファイル郡の格納リスト
-                List<Path> pathList;
-
-                AtomicInteger atomicInteger = new AtomicInteger(0);
-                try (Stream<Path> stream = Files.find(startPath, Integer.MAX_VALUE, (path, basicFileAttributes) -> isMatched(path, atomicInteger))) {
-                    pathList = stream.collect(Collectors.toList());
-                } catch (IOException e) {
-                    throw new GZipRuntimeException(e);
-                }
+        // 検索結果は見つかった順にテーブルへ追加する
+        createFileTable(Collections.emptyList());
 
-                return pathList;
-            }
+        // 進捗の表示 ※走査スレッドはカウンターの加算のみ行い、一定間隔で画面に反映する
+        ScanProgress scanProgress = new ScanProgress();
+        Timer timer = new Timer(PROGRESS_INTERVAL, e -> {
+            // 100%だと進捗モニターが非表示となるため99%までにする
+            monitor.setProgress(Math.min(scanProgress.getPercentage(), 99));
+            monitor.setNote(getScanNote(scanProgress));
+        });
 
-            /**
-             * ファイルフィルター
-             *
-             * @param path ファイルパス
-             * @param atomicInteger インクリメント整数
-             * @return 合致したらtrue
-             */
-            private boolean isMatched(Path path, AtomicInteger atomicInteger) {
-                if (!Files.isRegularFile(path)) {
-                    // 通常ファイルでない場合は対象外 ※フォルダ等
-                    return false;
-                }
+        SwingWorker<Integer, List<ScannedFile>> sw = new SwingWorker<Integer, List<ScannedFile>>() {
 
-                System.out.println(path.getFileName() + " (" + Thread.currentThread().getName() + ")");
+            /** カラム幅を設定済みか */
+            private boolean columnWidthSet;
 
-                int num = atomicInteger.incrementAndGet();
+            /** 処理が重たいバックグラウンド処理 */
+            @Override protected Integer doInBackground() {
 
-                int percentage = BigDecimal.valueOf(num).divide(BigDecimal.valueOf(monitor.getMaximum()), 2, RoundingMode.DOWN)
-                                           .multiply(BigDecimal.valueOf(100)).intValue();
+                /** 検索結果をまとめてテーブルへ送る */
+                class ScanListener implements FileScanner.Listener {
+                    /** テーブルへの追加待ちのファイル郡 */
+                    private List<ScannedFile> pending = new ArrayList<>();
 
-                if (percentage == 100) {
-                    // 100%だと進捗モニターが非表示となるため99%にする
-                    percentage = 99;
-                }
+                    /** 最後にテーブルへ追加した時刻 */
+                    private long lastFlush = System.nanoTime();
 
-                setProgress(percentage);
-                publish(new Chunk(num, path));
+                    @Override public void visited(Path path, BasicFileAttributes attrs) {
+                        scanProgress.visited(path, attrs);
+                    }
 
-                return isMatchedExtension(path) && isMatchedDate(path);
-            }
+                    @Override public void matched(ScannedFile file) {
+                        scanProgress.matched(file);
+                        pending.add(file);
 
-            /**
-             * 拡張子フィルター
-             *
-             * @param path ファイルパス
-             * @return 合致したらtrue
-             */
-            private boolean isMatchedExtension(Path path) {
-                String extensions = getCmbBxText(cmb_extension);
-                if (!extensions.isEmpty()) {
-                    for (String extension : extensions.split(COMBO_BOX_SEPARATOR)) {
-                        if (path.getFileName().toString().matches("^.+\\.(?i)" + extension + "$")) {
-                            return true;
+                        // 一定件数・一定間隔毎にまとめて追加する
+                        long now = System.nanoTime();
+                        if (pending.size() >= ROW_BATCH_SIZE || now - lastFlush >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL)) {
+                            flush();
+                            lastFlush = now;
                         }
-                        if (Extension.LOG.extName.equals(extension)) {
-                            // logファイルは「*.log.数値」も含める
-                            if (path.getFileName().toString().matches("^.+\\.(?i)log\\.[0-9]+$")) {
-                                return true;
-                            }
+                    }
+
+                    /**
+                     * 追加待ちのファイル郡をテーブルへ送る
+                     */
+                    private void flush() {
+                        if (!pending.isEmpty()) {
+                            publish(pending);
+                            pending = new ArrayList<>();
                         }
                     }
+
+                    @Override public void progress(int done, int total) {
+                        scanProgress.progress(done, total);
+                    }
                 }
-                return false;
-            }
+                ScanListener listener = new ScanListener();
+                FileScanner scanner = FileScanner.create(filter, listener, scanMode, parallelism, indexDir);
 
-            /**
-             * 更新日フィルター
-             *
-             * @param path ファイルパス
-             * @return 合致したらtrue
-             */
-            private boolean isMatchedDate(Path path) {
-                LocalDateTime LastModifiedTime;
                 try {
-                    // 当該ファイルの最終更新日時取得
-                    LastModifiedTime = LocalDateTime.ofInstant(Files.getLastModifiedTime(path).toInstant(), ZoneId.systemDefault());
+                    if (watcher != null) {
+                        watcher.register(startPath);
+                    }
+                    int size = scanner.scan(startPath).size();
+
+                    // 最後の追加待ち
+                    listener.flush();
+                    return size;
                 } catch (IOException e) {
                     throw new GZipRuntimeException(e);
+                } finally {
+                    LOGGER.info(String.format("検索時間: %dms (%s) %s"
+                            , scanProgress.getElapsedMillis(), scanMode, getScanNote(scanProgress)));
                 }
-
-                // 現在日時の取得
-                LocalDateTime currentTime = LocalDateTime.now();
-
-                // 最終更新日時と選択特定日時の比較
-                DateLastModified dlm = DateLastModified.getByDateName((String) cmb_lastModifiedDate.getSelectedItem());
-                return LastModifiedTime.isBefore(currentTime.plusMonths(dlm.months));
             }
 
-            /** 途中経過の表示 */
-            @Override protected void process(List<Chunk> chunks) {
-                chunks.forEach(chunk -> {
-                    if (Objects.isNull(chunk.path)) {
-                        return;
-                    }
-                    String message = chunk.num + "/" + monitor.getMaximum() + ":" + chunk.path.getFileName();
-                    monitor.setNote(message);
-
-                    System.out.println(message + " (" + Thread.currentThread().getName() + ")");
-                });
+            /** 検索結果の追加 */
+            @Override protected void process(List<List<ScannedFile>> chunks) {
+                chunks.forEach(tableModel::addRows);
+                if (!columnWidthSet && tableModel.getRowCount() > 0) {
+                    // 最初の検索結果でカラム幅を仮に設定する
+                    setColumnWidth();
+                    columnWidthSet = true;
+                }
             }
 
             /** 処理終了 */
             @Override protected void done() {
+                timer.stop();
+                boolean completed = false;
                 try {
-                    List<Path> pathList = get();
-                    createFileTable(pathList);
+                    get();
+
+                    // 全ての検索結果でカラム幅を設定
+                    setColumnWidth();
+                    completed = true;
                 } catch (InterruptedException | ExecutionException e) {
                     throw new GZipRuntimeException(e);
                 } finally {
+                    if (watcher != null) {
+                        if (completed) {
+                            // 検索中に発生した変更から反映を開始する
+                            liveWatcher = watcher;
+                            watcher.start();
+                        } else {
+                            watcher.close();
+                        }
+                    }
                     monitor.close();
+
+                    // 部品活性
+                    setEnabledAll(true);
                 }
             }
         };
-        sw.addPropertyChangeListener(evt -> {
-            // プログレスの処理
-            if ("progress".equals(evt.getPropertyName())) {
-                monitor.setProgress((Integer) evt.getNewValue());
-            }
-        });
+        timer.start();
         sw.execute();
     }
 
-    private int getFileCount(Path dir) {
-        int count;
-        try (Stream<Path> stream = Files.walk(dir).filter(Files::isRegularFile)) {
-            count = (int) stream.count();
+    /**
+     * ライブ更新の生成
+     * <p>
+     * 変更はEDTで一覧に反映する。変更を取りこぼした場合は再検索する。
+     *
+     * @param filter ファイルフィルター
+     * @return ライブ更新
+     * @throws GZipException 監視を開始できない
+     */
+    private LiveWatcher createLiveWatcher(ScanFilter filter) throws GZipException {
+        LiveWatcher[] watcher = new LiveWatcher[1];
+        try {
+            watcher[0] = new LiveWatcher(filter, new LiveWatcher.Listener() {
+                @Override public void changed(List<ScannedFile> matched, Set<Path> removed) {
+                    SwingUtilities.invokeLater(() -> {
+                        // 再検索・終了後の通知は反映しない
+                        if (liveWatcher == watcher[0]) {
+                            tableModel.applyChanges(matched, removed);
+                        }
+                    });
+                }
+
+                @Override public void overflow() {
+                    SwingUtilities.invokeLater(() -> {
+                        if (liveWatcher != watcher[0]) {
+                            return;
+                        }
+                        if (btn_search.isEnabled()) {
+                            setFileTable(false);
+                        } else {
+                            // 圧縮中は終了後に再検索する
+                            liveRescanPending = true;
+                        }
+                    });
+                }
+            });
         } catch (IOException e) {
-            throw new GZipRuntimeException(e);
+            throw new GZipException(e);
+        }
+        return watcher[0];
+    }
+
+    /**
+     * ライブ更新の終了
+     */
+    private void stopLiveWatcher() {
+        if (liveWatcher != null) {
+            liveWatcher.close();
+            liveWatcher = null;
         }
-        return count;
+        liveRescanPending = false;
+    }
+
+    /**
+     * 検索の進捗表示
+     *
+     * @param progress 進捗
+     * @return 検索済みファイル数・処理速度・最後に検索したファイル
+     */
+    private String getScanNote(ScanProgress progress) {
+        Path lastVisited = progress.getLastVisited();
+        return String.format("%,d件 (%,d件/s %.1f MB/s) %s"
+                , progress.getVisitedFiles(), progress.getFilesPerSecond()
+                , progress.getBytesPerSecond() / (1024.0 * 1024.0)
+                , Objects.isNull(lastVisited) ? "" : lastVisited.getFileName());
+    }
+
+    /**
+     * 画面で選択した検索条件からファイルフィルターを生成
+     *
+     * @return ファイルフィルター
+     */
+    private ScanFilter createScanFilter() {
+        List<String> extensions = new ArrayList<>();
+        IntStream.range(0, cmb_extension.getModel().getSize())
+                 .mapToObj(i -> cmb_extension.getModel().getElementAt(i))
+                 .filter(CheckableItem::isSelected)
+                 .map(CheckableItem::toString)
+                 .forEach(extensions::add);
+
+        DateLastModified dlm = DateLastModified.getByDateName((String) cmb_lastModifiedDate.getSelectedItem());
+        return ScanFilter.create(extensions, dlm);
     }
 
     private void setEnabledAll(boolean b) {
@@ -554,21 +494,21 @@ public class GZipFrame extends JFrame {
         btn_fileCompression.setEnabled(b);
     }
 
-    private void createFileTable(List<Path> pathList) {
+    private void createFileTable(List<ScannedFile> fileList) {
         // Model取得
-        TableModel tableModel = getTableModel(pathList);
+        tableModel = new FileTableModel(fileList, DEFAULT_SL);
 
         // 合計サイズの設定
-        setTotalSize(tableModel);
+        setTotalSize();
 
         // テーブルの設定
         tbl_fileList.setModel(tableModel);
         tbl_fileList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         tbl_fileList.getTableHeader().setReorderingAllowed(true);
         tbl_fileList.setRowSelectionAllowed(true);
-        tbl_fileList.getModel().addTableModelListener(tableModelListener);
+        tableModel.addTableModelListener(tableModelListener);
 
-        tbl_fileList.getColumnModel().getColumn(Column.SIZE.columnNum).setCellRenderer(new DefaultTableCellRenderer() {
+        tbl_fileList.getColumnModel().getColumn(FileTableModel.Column.SIZE.columnNum).setCellRenderer(new DefaultTableCellRenderer() {
             {
                 // 右寄せ
                 setHorizontalAlignment(JLabel.RIGHT);
@@ -584,39 +524,63 @@ public class GZipFrame extends JFrame {
             }
         });
 
-        // -----------------------------
+        tbl_fileList.getColumnModel().getColumn(FileTableModel.Column.UPDATE_DATE.columnNum).setCellRenderer(new DefaultTableCellRenderer() {
+            /** 日付フォーマッター */
+            private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object obj, boolean isSelected, boolean hasFocus, int row, int column) {
+                if (obj instanceof Long) {
+                    // 日付フォーマット設定
+                    obj = dateFormat.format(obj);
+                }
+                return super.getTableCellRendererComponent(table, obj, isSelected, hasFocus, row, column);
+            }
+        });
+
         // テーブルのカラム幅の設定
-        // -----------------------------
+        setColumnWidth();
+    }
 
+    /**
+     * テーブルのカラム幅の設定
+     */
+    private void setColumnWidth() {
         // SLカラム幅は固定設定
         TableColumnModel columnModel = tbl_fileList.getColumnModel();
-        columnModel.getColumn(Column.SL.columnNum).setPreferredWidth(30);
+        columnModel.getColumn(FileTableModel.Column.SL.columnNum).setPreferredWidth(30);
+
+        // それ以外のカラム幅は自動調整 ※行数に関わらず一定数のサンプル行の表示幅で決める
+        Map<FileTableModel.Column, Integer> maxWidthMap = new HashMap<>();
+        FileTableModel.Column[] columns = {
+                FileTableModel.Column.DIR, FileTableModel.Column.FILE_NAME, FileTableModel.Column.UPDATE_DATE, FileTableModel.Column.SIZE
+        };
 
-        // それ以外のカラム幅は自動調整
-        Map<Column, Integer> maxLenMap = new HashMap<>();
-        Column[] columns = {Column.DIR, Column.FILE_NAME, Column.UPDATE_DATE, Column.SIZE};
+        // ヘッダーの表示幅
+        FontMetrics headerMetrics = tbl_fileList.getTableHeader().getFontMetrics(tbl_fileList.getTableHeader().getFont());
+        for (FileTableModel.Column column : columns) {
+            maxWidthMap.put(column, headerMetrics.stringWidth(tableModel.getColumnName(column.columnNum)));
+        }
 
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            for (Column column : columns) {
+        for (int i : getSampleRows()) {
+            for (FileTableModel.Column column : columns) {
                 Object value = tableModel.getValueAt(i, column.columnNum);
 
                 // レンダリングされた表示値を取得
                 TableCellRenderer tableCellRenderer = tbl_fileList.getCellRenderer(i, column.columnNum);
                 JLabel label = (JLabel) tableCellRenderer.getTableCellRendererComponent(tbl_fileList, value, false, false, i, column.columnNum);
-                String text = label.getText();
 
-                // 最大バイト数を格納
-                int len = text.getBytes().length;
-                int val = maxLenMap.computeIfAbsent(column, key -> 0);
-                maxLenMap.put(column, Math.max(len, val));
+                // 最大表示幅を格納
+                int width = label.getFontMetrics(label.getFont()).stringWidth(label.getText());
+                maxWidthMap.merge(column, width, Math::max);
             }
         }
 
-        // バイト数の合計を取得
-        int total = maxLenMap.values().stream().reduce(0, Integer::sum);
+        // 表示幅の合計を取得
+        int total = maxWidthMap.values().stream().reduce(0, Integer::sum);
 
         // カラム幅の設定
-        maxLenMap.forEach((key, value) -> {
+        maxWidthMap.forEach((key, value) -> {
             BigDecimal maxLenBd = BigDecimal.valueOf(value);
             BigDecimal totalBd = BigDecimal.valueOf(total);
             int width = maxLenBd.divide(totalBd, 2, BigDecimal.ROUND_UP).multiply(BigDecimal.valueOf(TABLE_WIDTH)).intValue();
@@ -624,60 +588,41 @@ public class GZipFrame extends JFrame {
         });
     }
 
-    private TableModel getTableModel(List<Path> pathList) {
-        // カラム名設定
-        Object[] columnNames = Column.getColumnNames();
-
-        // 日付フォーマッター
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm");
-
-        // データ設定
-        Object[][] tableData = new Object[pathList.size()][columnNames.length];
-        for (int i = 0; i < pathList.size(); i++) {
-            Path path = pathList.get(i);
-            File file = path.toFile();
-
-            // 初期値はチェックありに
-            tableData[i][Column.SL.columnNum] = DEFAULT_SL;
-            tableData[i][Column.DIR.columnNum] = file.getParent();
-            tableData[i][Column.FILE_NAME.columnNum] = file.getName();
-            tableData[i][Column.UPDATE_DATE.columnNum] = dateFormat.format(file.lastModified());
-            tableData[i][Column.SIZE.columnNum] = file.length();
-        }
-
-        return new DefaultTableModel(tableData, columnNames) {
-            @Override public Class<?> getColumnClass(int colIndex) {
-                if (tableData.length == 0) {
-                    return Object.class;
-                }
-                return getValueAt(0, colIndex).getClass();
+    /**
+     * カラム幅の算出に使用する行の取得
+     * <p>
+     * ディレクトリ・ファイル名が最長の行と、ランダムに抽出した行。
+     *
+     * @return サンプル行 ※最大 {@link #WIDTH_SAMPLE_SIZE} + 2 行
+     */
+    private Set<Integer> getSampleRows() {
+        Set<Integer> sampleRows = new TreeSet<>();
+        for (FileTableModel.Column column : new FileTableModel.Column[]{FileTableModel.Column.DIR, FileTableModel.Column.FILE_NAME}) {
+            int row = tableModel.getLongestRow(column);
+            if (row >= 0) {
+                sampleRows.add(row);
             }
+        }
 
-            @Override public boolean isCellEditable(int row, int column) {
-                return Column.SL.columnNum == column;
-            }
-        };
+        int rowCount = tableModel.getRowCount();
+        if (rowCount <= WIDTH_SAMPLE_SIZE) {
+            IntStream.range(0, rowCount).forEach(sampleRows::add);
+            return sampleRows;
+        }
+        Random random = new Random();
+        random.ints(WIDTH_SAMPLE_SIZE, 0, rowCount).forEach(sampleRows::add);
+        return sampleRows;
     }
 
     private final TableModelListener tableModelListener = e -> {
-        if (e.getColumn() == Column.SL.columnNum) {
-            DefaultTableModel model = (DefaultTableModel) e.getSource();
-
+        if (e.getColumn() == TableModelEvent.ALL_COLUMNS || e.getColumn() == FileTableModel.Column.SL.columnNum) {
             // 合計サイズの設定
-            setTotalSize(model);
+            setTotalSize();
         }
     };
 
-    private void setTotalSize(TableModel model) {
-        BigDecimal bd = BigDecimal.ZERO;
-        for (int i = 0; i < model.getRowCount(); i++) {
-            Boolean sl = (Boolean) model.getValueAt(i, Column.SL.columnNum);
-            if (sl) {
-                Long size = (Long) model.getValueAt(i, Column.SIZE.columnNum);
-                bd = bd.add(BigDecimal.valueOf(size));
-            }
-        }
-        lbl_totalSize.setText(showSize(bd.longValue()));
+    private void setTotalSize() {
+        lbl_totalSize.setText(showSize(tableModel.getSelectedSize()));
     }
 
     /**
@@ -700,50 +645,91 @@ public class GZipFrame extends JFrame {
      * 全SL設定
      */
     private void setAllSl(Boolean sl) {
-        // 一時的にリスナー削除
-        tbl_fileList.getModel().removeTableModelListener(tableModelListener);
-
-        // 全SL制御
-        IntStream.range(0, tbl_fileList.getModel().getRowCount()).forEach(i -> {
-            Boolean slTmp = (Boolean) tbl_fileList.getModel().getValueAt(i, Column.SL.columnNum);
-            if (sl.booleanValue() != slTmp.booleanValue()) {
-                tbl_fileList.getModel().setValueAt(sl, i, Column.SL.columnNum);
-            }
-        });
-
-        // 合計サイズの設定
-        setTotalSize(tbl_fileList.getModel());
-
-        // リスナー再登録
-        tbl_fileList.getModel().addTableModelListener(tableModelListener);
+        // 全SL制御 ※合計サイズはリスナーで設定
+        tableModel.setAllSl(sl);
     }
 
     /**
      * 圧縮処理
      */
     private void compressFile() {
-        List<Path> pathList = new ArrayList<>();
-        IntStream.range(0, tbl_fileList.getModel().getRowCount()).forEach(i -> {
-            Boolean sl = (Boolean) tbl_fileList.getModel().getValueAt(i, Column.SL.columnNum);
-            if (sl) {
-                // チェックあり行の処理
-                String dir = (String) tbl_fileList.getModel().getValueAt(i, Column.DIR.columnNum);
-                String fileName = (String) tbl_fileList.getModel().getValueAt(i, Column.FILE_NAME.columnNum);
-
-                Path path = Paths.get(dir, fileName);
-                pathList.add(path);
-            }
-        });
+        // チェックあり行のファイル
+        List<Path> pathList = tableModel.getSelectedPaths();
+        long totalSize = tableModel.getSelectedSize();
 
         if (pathList.isEmpty()) {
             JOptionPane.showMessageDialog(this, "圧縮するファイルがありません", "圧縮エラー", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
+        // 圧縮形式・圧縮レベルの選択
+        CompressOptionPanel optionPanel = new CompressOptionPanel(settings.getCompressFormat(), settings.getCompressLevel());
+        int option = JOptionPane.showConfirmDialog(this, optionPanel, "圧縮", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        OutputFormat format = optionPanel.getFormat();
+        settings.setProperty(Settings.PropKeys.COMPRESS_FORMAT, format.getFormatName());
+        settings.setProperty(Settings.PropKeys.COMPRESS_LEVEL, optionPanel.getLevel().getLevelName());
+        settings.store();
+
+        if (format == OutputFormat.ZIP && settings.getCompressVolumeSize() <= 0 && settings.isCompressDictionary()) {
+            // 辞書圧縮のエントリは独自の圧縮方式のため、他のツールでは展開できない
+            int dictionaryOption = JOptionPane.showConfirmDialog(this
+                    , "辞書圧縮の設定で圧縮しますか？" + System.lineSeparator()
+                            + "(作成した圧縮ファイルはG-Zipの展開(--extract)でのみ展開できます。他のツールでは展開できません)"
+                    , "圧縮", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (dictionaryOption != JOptionPane.OK_OPTION) {
+                return;
+            }
+        }
+
+        File archiveFile = null;
+        boolean append = false;
+        if (format != OutputFormat.GZIP) {
+            // 1ファイルにまとめる形式は保存先を選択
+            archiveFile = selectArchiveFile(format);
+            if (Objects.isNull(archiveFile)) {
+                return;
+            }
+
+            // 既存のZipファイル(分割しない場合)は追記・上書きを選択
+            if (format == OutputFormat.ZIP && settings.getCompressVolumeSize() <= 0 && archiveFile.exists()) {
+                if (settings.isCompressDedup() || settings.isCompressDictionary()) {
+                    // 重複除去・辞書圧縮は既存の一覧・対応表と重複するため、追記できない
+                    int overwriteOption = JOptionPane.showConfirmDialog(this
+                            , "既存の圧縮ファイルを上書きしますか？" + System.lineSeparator() + "(重複除去・辞書圧縮の設定では追記できません)"
+                            , "圧縮", JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+                    if (overwriteOption != JOptionPane.OK_OPTION) {
+                        return;
+                    }
+                } else {
+                    int appendOption = JOptionPane.showConfirmDialog(this
+                            , "既存の圧縮ファイルに追記しますか？" + System.lineSeparator() + "(いいえ: 上書き)"
+                            , "圧縮", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+                    if (appendOption != JOptionPane.YES_OPTION && appendOption != JOptionPane.NO_OPTION) {
+                        return;
+                    }
+                    append = appendOption == JOptionPane.YES_OPTION;
+                }
+            }
+        }
+
+        compressInBackground(pathList, totalSize, format, archiveFile, append, chk_deleteSL.isSelected());
+    }
+
+    /**
+     * 圧縮ファイルの保存先を選択
+     *
+     * @param format 圧縮形式
+     * @return 圧縮ファイル ※選択しなかった場合はnull
+     */
+    private File selectArchiveFile(OutputFormat format) {
+        String extension = format.getExtension();
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Zip保存先を決める");
+        fileChooser.setDialogTitle("圧縮ファイル保存先を決める");
         fileChooser.setSelectedFile(new File(txt_workDir.getText(), getZipFileName()));
-        fileChooser.setFileFilter(new FileNameExtensionFilter("*.zip", "zip"));
+        fileChooser.setFileFilter(new FileNameExtensionFilter("*" + extension, extension.substring(extension.lastIndexOf('.') + 1)));
 
         File zipFile = null;
         int selected = fileChooser.showSaveDialog(this);
@@ -751,37 +737,131 @@ public class GZipFrame extends JFrame {
             zipFile = fileChooser.getSelectedFile();
         }
         if (Objects.isNull(zipFile)) {
-            return;
+            return null;
         }
 
         String pathStr = zipFile.getPath();
-        if (!pathStr.endsWith(".zip")) {
-            zipFile = new File(pathStr + ".zip");
+        if (!pathStr.endsWith(extension)) {
+            zipFile = new File(pathStr + extension);
         }
+        return zipFile;
+    }
+
+    /**
+     * バックグラウンドで圧縮・削除
+     * <p>
+     * キャンセルした場合は作成途中の圧縮ファイルを削除(追記の場合は追記前の状態に戻す)し、元ファイルは削除しない。
+     *
+     * @param pathList    圧縮するファイル郡
+     * @param totalSize   圧縮するファイルの合計サイズ
+     * @param format      圧縮形式
+     * @param archiveFile 圧縮ファイル ※ファイル毎のgzip圧縮の場合はnull
+     * @param append      既存の圧縮ファイルに追記するか
+     * @param deleteSL    SL選択ファイル郡を削除するか
+     */
+    private void compressInBackground(List<Path> pathList, long totalSize, OutputFormat format, File archiveFile, boolean append, boolean deleteSL) {
+        CompressProgress progress = new CompressProgress(pathList.size(), totalSize);
+
+        // 圧縮処理は画面の入力値を参照するためEDTで生成する
+        GzipCompressor gzipCompressor = new GzipCompressor(settings.getCompressBufferSize(), settings.getCompressParallelism(), settings.getCompressLevel());
+        Archiver archiver = format == OutputFormat.GZIP ? null : createArchiver(format);
+        boolean pipelinedDelete = deleteSL && format == OutputFormat.ZIP && settings.isCompressPipelinedDelete();
+
+        ProgressMonitor monitor = new ProgressMonitor(this, "圧縮中...", System.lineSeparator(), 0, 100);
+        monitor.setMillisToDecideToPopup(0);
+        monitor.setMillisToPopup(0);
+        monitor.setProgress(0);
+
+        // 進捗の表示・キャンセルの受付
+        Timer timer = new Timer(PROGRESS_INTERVAL, e -> {
+            if (monitor.isCanceled()) {
+                progress.cancel();
+            }
+            // 100%だと進捗モニターが非表示となるため99%までにする
+            monitor.setProgress(Math.min(progress.getPercentage(), 99));
+            monitor.setNote(getProgressNote(progress));
+        });
+
+        SwingWorker<String, Void> sw = new SwingWorker<String, Void>() {
 
-        zip(pathList, zipFile);
+            /** 処理が重たいバックグラウンド処理 */
+            @Override protected String doInBackground() throws IOException {
+                if (format == OutputFormat.GZIP) {
+                    // SL選択ファイル郡の削除は全ファイルの圧縮完了後に行う
+                    List<Path> gzList = gzipCompressor.compress(pathList, deleteSL, progress);
+
+                    long gzSize = gzList.stream().map(Path::toFile).mapToLong(File::length).sum();
+                    return String.format("正常に圧縮が完了しました。%s件数: %d%sサイズ: %s"
+                            , System.lineSeparator(), gzList.size()
+                            , System.lineSeparator(), showSize(gzSize));
+                }
+
+                // SL選択ファイル郡の削除は圧縮ファイルの作成完了後に行う
+                List<Path> archiveFiles = archiver.archive(pathList, archiveFile.toPath(), append, deleteSL, progress);
+                if (archiveFiles.size() > 1) {
+                    // 分割した場合はボリューム数・合計サイズ
+                    long archiveSize = archiveFiles.stream().map(Path::toFile).mapToLong(File::length).sum();
+                    return String.format("正常に圧縮が完了しました。%sパス: %s ～ %s (%d件)%sサイズ: %s"
+                            , System.lineSeparator(), archiveFiles.get(0), archiveFiles.get(archiveFiles.size() - 1).getFileName()
+                            , archiveFiles.size(), System.lineSeparator(), showSize(archiveSize));
+                }
+
+                return String.format("正常に圧縮が完了しました。%sパス: %s%sサイズ: %s"
+                        , System.lineSeparator(), archiveFile.getPath()
+                        , System.lineSeparator(), showSize(archiveFile.length()));
+            }
+
+            /** 処理終了 */
+            @Override protected void done() {
+                timer.stop();
+                monitor.close();
+                setEnabledAll(true);
 
-        if (chk_deleteSL.isSelected()) {
-            // SL選択ファイル郡削除
-            for (Path path : pathList) {
                 try {
-                    Files.delete(path);
-                } catch (IOException e) {
-                    JOptionPane.showMessageDialog(this, e.getMessage(), e.getClass().getName(), JOptionPane.ERROR_MESSAGE);
+                    String message = get();
+                    JOptionPane.showMessageDialog(GZipFrame.this, message, "圧縮完了", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException e) {
                     throw new GZipRuntimeException(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof InterruptedIOException) {
+                        // キャンセル時は圧縮ファイル・元ファイルとも圧縮前の状態 ※並行削除では削除済みの元ファイルのエントリまでで圧縮ファイルを完了する
+                        JOptionPane.showMessageDialog(GZipFrame.this, cause.getMessage(), "圧縮中止", JOptionPane.INFORMATION_MESSAGE);
+                        if (!pipelinedDelete) {
+                            return;
+                        }
+                    } else {
+                        JOptionPane.showMessageDialog(GZipFrame.this, cause.getMessage(), cause.getClass().getName(), JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+
+                if ((deleteSL && liveWatcher == null) || liveRescanPending) {
+                    // 最新の情報に設定 ※ライブ更新中は削除を監視で反映する
+                    setFileTable();
                 }
             }
-        }
+        };
 
-        String message = String.format("正常に圧縮が完了しました。%sパス: %s%sサイズ: %s"
-                , System.lineSeparator(), zipFile.getPath()
-                , System.lineSeparator(), showSize(zipFile.length()));
-        JOptionPane.showMessageDialog(this, message, "圧縮完了", JOptionPane.INFORMATION_MESSAGE);
+        // 部品非活性
+        setEnabledAll(false);
 
-        if (chk_deleteSL.isSelected()) {
-            // 最新の情報に設定
-            setFileTable();
-        }
+        timer.start();
+        sw.execute();
+    }
+
+    /**
+     * 圧縮の進捗表示
+     *
+     * @param progress 進捗
+     * @return 処理済みファイル数・サイズ・処理速度・残り時間
+     */
+    private String getProgressNote(CompressProgress progress) {
+        long remaining = progress.getRemainingSeconds();
+        String eta = remaining < 0 ? "--:--" : String.format("%02d:%02d", remaining / 60, remaining % 60);
+        return String.format("%,d / %,d件 %s / %s (%,d件/s %.1f MB/s) 残り %s"
+                , progress.getProcessedFiles(), progress.getTotalFiles()
+                , showSize(progress.getProcessedBytes()), showSize(progress.getTotalBytes())
+                , progress.getFilesPerSecond(), progress.getBytesPerSecond() / (1024.0 * 1024.0), eta);
     }
 
     /**
@@ -805,27 +885,16 @@ public class GZipFrame extends JFrame {
     }
 
     /**
-     * 圧縮処理
+     * 1ファイルにまとめる圧縮処理の生成
      *
-     * @param pathList 圧縮するファイル郡
-     * @param zipFile  圧縮ファイル
+     * @param format 圧縮形式
+     * @return 圧縮処理
      */
-    private void zip(List<Path> pathList, File zipFile) {
-        try (FileOutputStream fos = new FileOutputStream(zipFile);
-                BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ZipOutputStream zos = new ZipOutputStream(bos, Charset.defaultCharset())) {
-            String removeStr = txt_workDir.getText() + File.separator;
-            for (Path path : pathList) {
-                byte[] bytes = Files.readAllBytes(path);
-                String entryName = path.toFile().getPath().replace(removeStr, "");
-                ZipEntry zipEntry = new ZipEntry(entryName);
-                zos.putNextEntry(zipEntry);
-                zos.write(bytes);
-            }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, e.getMessage(), e.getClass().getName(), JOptionPane.ERROR_MESSAGE);
-            throw new GZipRuntimeException(e);
-        }
+    private Archiver createArchiver(OutputFormat format) {
+        String removeStr = txt_workDir.getText() + File.separator;
+        return Archiver.create(format, removeStr, settings.getCompressBufferSize(), settings.getCompressParallelism(), settings.getCompressLevel(),
+                settings.getCompressVolumeSize(), settings.isCompressPipelinedDelete(), settings.isCompressVerify(),
+                settings.isCompressDedup(), settings.isCompressDictionary());
     }
 
     /**
@@ -0,0 +1,266 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 処理の計測値
+ * <p>
+ * 検索・圧縮・削除の各処理から加算し、プラットフォームMBeanサーバーに登録して公開する。
+ * カウンターは {@link LongAdder} のため、並列の走査・圧縮スレッドでも競合しない。
+ */
+final class GZipMetrics implements GZipMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(GZipMetrics.class.getName());
+
+    /** MBeanの名前 */
+    static final String OBJECT_NAME = "G-Zip:type=Metrics";
+
+    /** 処理段階 */
+    enum Phase {
+        COUNT("count"),
+        SCAN("scan"),
+        FILTER("filter"),
+        DEDUP("dedup"),
+        DICTIONARY("dictionary"),
+        COMPRESS("compress"),
+        VERIFY("verify"),
+        DELETE("delete");
+
+        private final String phaseName;
+
+        Phase(String phaseName) {
+            this.phaseName = phaseName;
+        }
+    }
+
+    private static final GZipMetrics INSTANCE = register(new GZipMetrics());
+
+    private final LongAdder filesVisited = new LongAdder();
+    private final LongAdder filesMatched = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+
+    private final Map<Phase, PhaseTimer> phaseTimers = new EnumMap<>(Phase.class);
+
+    /** 検索毎の処理速度(ファイル数/秒)・ファイル毎の圧縮速度(MB/秒) */
+    private final Histogram scanThroughput = new Histogram();
+    private final Histogram compressThroughput = new Histogram();
+
+    private GZipMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseTimers.put(phase, new PhaseTimer());
+        }
+    }
+
+    private static GZipMetrics register(GZipMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            // 計測値を公開できなくても処理は続ける
+            LOGGER.log(Level.WARNING, "計測値を登録できません。", e);
+        }
+        return metrics;
+    }
+
+    static GZipMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 処理段階の所要時間を記録
+     *
+     * @param phase      処理段階
+     * @param startNanos 開始日時({@link System#nanoTime()})
+     */
+    void record(Phase phase, long startNanos) {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 処理段階の所要時間を記録
+     *
+     * @param phase 処理段階
+     * @param nanos 所要時間(ナノ秒)
+     */
+    void recordNanos(Phase phase, long nanos) {
+        phaseTimers.get(phase).record(nanos);
+    }
+
+    /**
+     * 1回の検索の記録
+     *
+     * @param startNanos  開始日時({@link System#nanoTime()})
+     * @param visited     訪問した通常ファイル数
+     * @param matched     検索条件に合致したファイル数
+     * @param filterNanos 検索条件の判定時間の合計(ナノ秒)
+     */
+    void recordScan(long startNanos, long visited, long matched, long filterNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        recordNanos(Phase.SCAN, nanos);
+        recordNanos(Phase.FILTER, filterNanos);
+        filesVisited.add(visited);
+        filesMatched.add(matched);
+        scanThroughput.record(perSecond(visited, nanos));
+    }
+
+    /**
+     * 1ファイル分の読み込みの記録
+     *
+     * @param bytes バイト数
+     * @param nanos 所要時間(ナノ秒)
+     */
+    void recordRead(long bytes, long nanos) {
+        bytesRead.add(bytes);
+        compressThroughput.record(perSecond(bytes, nanos) / (1024 * 1024));
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void addFilesDeleted(long files) {
+        filesDeleted.add(files);
+    }
+
+    private static long perSecond(long count, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (long) (count / (nanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Override public long getFilesVisited() {
+        return filesVisited.sum();
+    }
+
+    @Override public long getFilesMatched() {
+        return filesMatched.sum();
+    }
+
+    @Override public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override public long getFilesDeleted() {
+        return filesDeleted.sum();
+    }
+
+    @Override public double getCompressionRatio() {
+        long read = getBytesRead();
+        return read == 0 ? 0 : (double) getBytesWritten() / read;
+    }
+
+    @Override public Map<String, PhaseStats> getPhaseStats() {
+        Map<String, PhaseStats> stats = new LinkedHashMap<>();
+        phaseTimers.forEach((phase, timer) -> stats.put(phase.phaseName, timer.toStats()));
+        return stats;
+    }
+
+    @Override public Map<String, Long> getScanThroughputHistogram() {
+        return scanThroughput.toMap();
+    }
+
+    @Override public Map<String, Long> getCompressThroughputHistogram() {
+        return compressThroughput.toMap();
+    }
+
+    @Override public void reset() {
+        filesVisited.reset();
+        filesMatched.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        filesDeleted.reset();
+        phaseTimers.values().forEach(PhaseTimer::reset);
+        scanThroughput.reset();
+        compressThroughput.reset();
+    }
+
+    /** 1つの処理段階の所要時間 */
+    private static class PhaseTimer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong lastNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            lastNanos.set(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private PhaseStats toStats() {
+            return new PhaseStats(count.sum(), TimeUnit.NANOSECONDS.toMillis(totalNanos.sum())
+                    , TimeUnit.NANOSECONDS.toMillis(lastNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            lastNanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+
+    /**
+     * 度数分布 ※区間は2の累乗(0、1、2～3、4～7、…)
+     */
+    private static class Histogram {
+        /** 区間数 ※最後の区間は上限なし */
+        private static final int BUCKETS = 24;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private void record(long value) {
+            int bucket = value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+            counts.incrementAndGet(bucket);
+        }
+
+        /**
+         * @return 区間 → 度数 ※度数が0の区間は含めない
+         */
+        private Map<String, Long> toMap() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = counts.get(i);
+                if (count == 0) {
+                    continue;
+                }
+                String range;
+                if (i == 0) {
+                    range = "0";
+                } else if (i == BUCKETS - 1) {
+                    range = (1L << (i - 1)) + "-";
+                } else {
+                    range = (1L << (i - 1)) + "-" + ((1L << i) - 1);
+                }
+                map.put(range, count);
+            }
+            return map;
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+/**
+ * 処理の計測値(JMX)
+ * <p>
+ * JConsole等のJMXクライアントから「G-Zip:type=Metrics」で参照する。
+ * 値は起動時(または {@link #reset()})からの累計。
+ */
+public interface GZipMetricsMXBean {
+
+    /** 訪問した通常ファイル数 */
+    long getFilesVisited();
+
+    /** 検索条件に合致したファイル数 */
+    long getFilesMatched();
+
+    /** 圧縮で読み込んだバイト数 */
+    long getBytesRead();
+
+    /** 圧縮ファイルとして書き込んだバイト数 */
+    long getBytesWritten();
+
+    /** 削除した元ファイル数 */
+    long getFilesDeleted();
+
+    /**
+     * 圧縮率
+     *
+     * @return 書き込んだバイト数 / 読み込んだバイト数 ※未圧縮の場合は0
+     */
+    double getCompressionRatio();
+
+    /**
+     * 処理段階毎の所要時間
+     *
+     * @return 処理段階(count / scan / filter / dedup / dictionary / compress / verify / delete) → 所要時間
+     */
+    Map<String, PhaseStats> getPhaseStats();
+
+    /**
+     * 検索毎の処理速度の分布
+     *
+     * @return 区間(ファイル数/秒) → 検索回数
+     */
+    Map<String, Long> getScanThroughputHistogram();
+
+    /**
+     * ファイル毎の圧縮速度の分布
+     *
+     * @return 区間(MB/秒) → ファイル数
+     */
+    Map<String, Long> getCompressThroughputHistogram();
+
+    /**
+     * 計測値の初期化
+     */
+    void reset();
+
+    /** 1つの処理段階の所要時間 */
+    class PhaseStats {
+        private final long count;
+        private final long totalMillis;
+        private final long lastMillis;
+        private final long maxMillis;
+
+        /**
+         * @param count       実行回数
+         * @param totalMillis 合計時間(ミリ秒)
+         * @param lastMillis  最後の実行時間(ミリ秒)
+         * @param maxMillis   最大の実行時間(ミリ秒)
+         */
+        @ConstructorProperties({"count", "totalMillis", "lastMillis", "maxMillis"})
+        public PhaseStats(long count, long totalMillis, long lastMillis, long maxMillis) {
+            this.count = count;
+            this.totalMillis = totalMillis;
+            this.lastMillis = lastMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public long getLastMillis() {
+            return lastMillis;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        /**
+         * @return 平均の実行時間(ミリ秒)
+         */
+        public long getMeanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+    }
+}
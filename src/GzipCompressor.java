@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ファイル毎のgzip圧縮
+ * <p>
+ * 各ファイルを同じディレクトリの「ファイル名.gz」に圧縮し、最終更新日時を引き継ぐ(logrotateと同じ形式)。
+ * ファイル毎に独立しているため、固定数のワーカースレッドで並列に処理する。
+ */
+class GzipCompressor {
+    /** 圧縮ファイルの拡張子 */
+    static final String SUFFIX = ".gz";
+
+    /** 作成途中の圧縮ファイルの拡張子 */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final int bufferSize;
+    private final int parallelism;
+    private final CompressionLevel compressionLevel;
+
+    /**
+     * @param bufferSize       読み込みバッファのサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     */
+    protected GzipCompressor(int bufferSize, int parallelism, CompressionLevel compressionLevel) {
+        if (bufferSize < 1) {
+            throw new GZipRuntimeException("バッファサイズは1以上を指定してください。(" + bufferSize + ")");
+        }
+        if (parallelism < 1) {
+            throw new GZipRuntimeException("並列数は1以上を指定してください。(" + parallelism + ")");
+        }
+        this.bufferSize = bufferSize;
+        this.parallelism = parallelism;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * 圧縮処理
+     * <p>
+     * 元ファイルは全ての圧縮ファイルの書き込み・クローズが完了した後に削除する。
+     * いずれかのファイルで失敗・キャンセルした場合は、作成済みの圧縮ファイルを削除して元の状態に戻す。
+     *
+     * @param pathList       圧縮するファイル郡
+     * @param deleteOriginal 元ファイルを削除するか
+     * @param progress       進捗
+     * @return 作成した圧縮ファイル郡
+     * @throws IOException 入出力エラー
+     */
+    public List<Path> compress(List<Path> pathList, boolean deleteOriginal, CompressProgress progress) throws IOException {
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<Future<Path>> futures = new ArrayList<>();
+        List<Path> gzList = new ArrayList<>();
+        boolean completed = false;
+        try {
+            for (Path path : pathList) {
+                futures.add(executor.submit(() -> compress(path, progress)));
+            }
+            for (Future<Path> future : futures) {
+                gzList.add(getResult(future));
+            }
+            completed = true;
+        } finally {
+            executor.shutdownNow();
+            if (!completed) {
+                rollback(executor, futures);
+            }
+        }
+
+        metrics.record(GZipMetrics.Phase.COMPRESS, start);
+        for (Path gzPath : gzList) {
+            metrics.addBytesWritten(Files.size(gzPath));
+        }
+
+        if (deleteOriginal) {
+            start = System.nanoTime();
+            for (Path path : pathList) {
+                Files.delete(path);
+            }
+            metrics.record(GZipMetrics.Phase.DELETE, start);
+            metrics.addFilesDeleted(pathList.size());
+        }
+        return gzList;
+    }
+
+    /**
+     * 作成済みの圧縮ファイルを削除
+     *
+     * @param executor 停止中のワーカースレッド
+     * @param futures  各ファイルの処理結果
+     */
+    private static void rollback(ExecutorService executor, List<Future<Path>> futures) {
+        try {
+            // 実行中のファイルの終了を待つ
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<Path> future : futures) {
+            if (!future.isDone() || future.isCancelled()) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(future.get());
+            } catch (InterruptedException | ExecutionException | IOException e) {
+                // 失敗したファイルは圧縮ファイルを作成していない
+            }
+        }
+    }
+
+    /**
+     * 1ファイル分の圧縮処理 ※ワーカースレッドで実行
+     *
+     * @param path     圧縮するファイル
+     * @param progress 進捗
+     * @return 圧縮ファイル
+     * @throws IOException 入出力エラー
+     */
+    private Path compress(Path path, CompressProgress progress) throws IOException {
+        Path gzPath = getGzPath(path);
+        if (Files.exists(gzPath)) {
+            throw new FileAlreadyExistsException(gzPath.toString());
+        }
+        FileTime lastModified = Files.getLastModifiedTime(path);
+        int level = compressionLevel.shouldStore(path) ? Deflater.NO_COMPRESSION : compressionLevel.getLevel();
+
+        // 作成途中のファイルを「*.gz」として残さないよう、一時ファイルに書き込んでから名前を変更する
+        Path tmpPath = gzPath.resolveSibling(gzPath.getFileName() + TMP_SUFFIX);
+        try {
+            byte[] buffer = new byte[bufferSize];
+            try (InputStream is = progress.wrap(Files.newInputStream(path));
+                    OutputStream os = Files.newOutputStream(tmpPath);
+                    GZIPOutputStream gos = new GZIPOutputStream(os, bufferSize) {
+                        {
+                            def.setLevel(level);
+                        }
+                    }) {
+                int len;
+                while ((len = is.read(buffer)) != -1) {
+                    gos.write(buffer, 0, len);
+                }
+            }
+            Files.setLastModifiedTime(tmpPath, lastModified);
+            Files.move(tmpPath, gzPath);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+        return gzPath;
+    }
+
+    /**
+     * 圧縮ファイルのパスを取得
+     *
+     * @param path 圧縮するファイル
+     * @return 圧縮ファイルのパス
+     */
+    public static Path getGzPath(Path path) {
+        return path.resolveSibling(path.getFileName() + SUFFIX);
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GZipRuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new GZipRuntimeException(e.getCause());
+        }
+    }
+}
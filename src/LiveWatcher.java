@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 検索結果のライブ更新
+ * <p>
+ * 作業ディレクトリ配下の全ディレクトリを {@link WatchService} に登録し、作成・変更・削除を検索条件で判定して通知する。
+ * イベントは一定時間まとめてから、同じパスの変更を最後の状態に集約して1回で通知する。
+ * 通知は監視スレッドから呼ばれるため、画面への反映はEDTで行うこと。
+ * OSのイベントキューが溢れた場合は変更を取りこぼすため、再検索を要求する。
+ */
+class LiveWatcher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(LiveWatcher.class.getName());
+
+    /** イベントをまとめる時間(ミリ秒) */
+    private static final long BATCH_MILLIS = 500;
+
+    /** 変更の通知先 ※監視スレッドから呼ばれる */
+    interface Listener {
+        /**
+         * 検索結果が変わった
+         *
+         * @param matched 検索条件に合致するファイル ※作成・変更されたもの
+         * @param removed 検索結果から除くパス ※削除・条件に合致しなくなったファイル、削除されたディレクトリ
+         */
+        void changed(List<ScannedFile> matched, Set<Path> removed);
+
+        /**
+         * 変更を取りこぼした ※再検索が必要
+         */
+        void overflow();
+    }
+
+    private final ScanFilter filter;
+    private final Listener listener;
+    private final WatchService watchService;
+
+    /** 監視中のディレクトリ */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    private Thread thread;
+
+    /**
+     * @param filter   ファイルフィルター
+     * @param listener 変更の通知先
+     * @throws IOException 監視を開始できない
+     */
+    protected LiveWatcher(ScanFilter filter, Listener listener) throws IOException {
+        this.filter = filter;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * 作業ディレクトリ配下の監視登録 ※検索の前に登録し、検索中の変更もイベントとして残す
+     *
+     * @param startPath 作業ディレクトリ
+     * @throws IOException 読み込みエラー
+     */
+    public void register(Path startPath) throws IOException {
+        registerAll(startPath, null);
+    }
+
+    /**
+     * ディレクトリ配下の監視登録
+     *
+     * @param dir     ディレクトリ
+     * @param matched 配下のファイルを判定する場合の追加先 ※監視開始後に作成されたディレクトリ
+     * @throws IOException 読み込みエラー
+     */
+    private void registerAll(Path dir, Map<Path, ScannedFile> matched) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (matched != null) {
+                    ScannedFile scannedFile = match(file, attrs);
+                    if (scannedFile != null) {
+                        matched.put(file, scannedFile);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 監視スレッドの開始
+     */
+    public void start() {
+        thread = new Thread(this::watch, "G-Zip-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 監視の終了
+     */
+    @Override public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "監視を終了できません。", e);
+        }
+    }
+
+    /**
+     * 監視スレッドの処理
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+
+                // 一定時間のイベントをまとめる
+                Map<Path, ScannedFile> matched = new LinkedHashMap<>();
+                Set<Path> removed = new HashSet<>();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS);
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= handle(key, matched, removed);
+                    long remaining = deadline - System.nanoTime();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                }
+
+                if (overflow) {
+                    listener.overflow();
+                } else if (!matched.isEmpty() || !removed.isEmpty()) {
+                    listener.changed(new ArrayList<>(matched.values()), removed);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // 監視の終了
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 1ディレクトリ分のイベントを処理
+     *
+     * @param key     イベントが発生したディレクトリ
+     * @param matched 検索条件に合致するファイルの追加先
+     * @param removed 検索結果から除くパスの追加先
+     * @return イベントを取りこぼした場合はtrue
+     */
+    private boolean handle(WatchKey key, Map<Path, ScannedFile> matched, Set<Path> removed) {
+        Path dir = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                matched.remove(path);
+                removed.add(path);
+                continue;
+            }
+
+            // 作成・変更は現在の属性で判定する
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        // 作成されたディレクトリは配下を監視登録し、既に作成済みのファイルも判定する
+                        registerAll(path, matched);
+                    }
+                    continue;
+                }
+                ScannedFile scannedFile = match(path, attrs);
+                if (scannedFile != null) {
+                    matched.put(path, scannedFile);
+                    removed.remove(path);
+                } else {
+                    matched.remove(path);
+                    removed.add(path);
+                }
+            } catch (NoSuchFileException e) {
+                // 判定前に削除された
+                matched.remove(path);
+                removed.add(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "変更を判定できません。(" + path + ")", e);
+            }
+        }
+        if (!key.reset()) {
+            // 削除されたディレクトリ
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * 検索条件の判定 ※{@link FileScanner} と同じ条件
+     *
+     * @param file  ファイル
+     * @param attrs ファイル属性 ※シンボリックリンク自体の属性
+     * @return 合致した場合はファイル、合致しない場合はnull
+     */
+    private ScannedFile match(Path file, BasicFileAttributes attrs) {
+        if (attrs.isSymbolicLink()) {
+            // リンク先の属性で判定する
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        if (attrs.isRegularFile() && filter.test(file, attrs)) {
+            return new ScannedFile(file, attrs);
+        }
+        return null;
+    }
+}
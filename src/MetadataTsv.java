@@ -0,0 +1,108 @@
+/**
+ * G-Zipが格納する一覧(TSV)の項目の変換
+ * <p>
+ * エントリ名はファイル名のためタブ・改行を含む場合がある。項目は「\」「TAB」「LF」「CR」を
+ * 「\\」「\t」「\n」「\r」に置き換えて書き込み、1行を区切り文字で分割してから元に戻す。
+ */
+final class MetadataTsv {
+    /** 項目の区切り文字 */
+    static final String SEPARATOR = "\t";
+
+    private static final char ESCAPE = '\\';
+
+    private MetadataTsv() {
+    }
+
+    /**
+     * 1行分の作成
+     *
+     * @param fields 項目郡
+     * @return 区切り文字で連結し、改行を付加した行
+     */
+    static String toLine(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            escape(sb, fields[i]);
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * 1行分の読み込み
+     *
+     * @param line  行 ※改行を含まない
+     * @param count 項目数
+     * @return 項目郡
+     * @throws GZipRuntimeException 項目数が一致しない・不正なエスケープ
+     */
+    static String[] fromLine(String line, int count) {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != count) {
+            throw new GZipRuntimeException("項目数が一致しません。(" + line + ")");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = unescape(fields[i]);
+        }
+        return fields;
+    }
+
+    private static void escape(StringBuilder sb, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case ESCAPE:
+                    sb.append(ESCAPE).append(ESCAPE);
+                    break;
+                case '\t':
+                    sb.append(ESCAPE).append('t');
+                    break;
+                case '\n':
+                    sb.append(ESCAPE).append('n');
+                    break;
+                case '\r':
+                    sb.append(ESCAPE).append('r');
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf(ESCAPE) < 0) {
+            return field;
+        }
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != ESCAPE) {
+                sb.append(c);
+                continue;
+            }
+            if (++i >= field.length()) {
+                throw new GZipRuntimeException("不正なエスケープです。(" + field + ")");
+            }
+            switch (field.charAt(i)) {
+                case ESCAPE:
+                    sb.append(ESCAPE);
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                default:
+                    throw new GZipRuntimeException("不正なエスケープです。(" + field + ")");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * 圧縮形式
+ */
+enum OutputFormat {
+    ZIP("zip", "Zip(1ファイルにまとめる)"),
+    GZIP("gz", "gzip(ファイル毎に置き換える)"),
+    TAR_GZ("tar.gz", "tar.gz(1ファイルにまとめる)");
+
+    private final String formatName;
+    private final String displayName;
+
+    OutputFormat(String formatName, String displayName) {
+        this.formatName = formatName;
+        this.displayName = displayName;
+    }
+
+    static OutputFormat getByFormatName(String formatName) {
+        for (OutputFormat format : values()) {
+            if (format.formatName.equalsIgnoreCase(formatName)) {
+                return format;
+            }
+        }
+        throw new GZipRuntimeException("該当する圧縮形式が見つかりません。(" + formatName + ")");
+    }
+
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * @return 圧縮ファイルの拡張子
+     */
+    public String getExtension() {
+        return "." + formatName;
+    }
+
+    @Override public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,539 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 並列Deflate圧縮
+ * <p>
+ * 入力を固定サイズのブロックに分割してワーカースレッドで圧縮し、呼び出し元スレッドで投入順に出力する。
+ * 各ブロックは直前のブロックの末尾32KBを辞書として圧縮し、最終ブロック以外はSYNC_FLUSHでバイト境界に揃えるため、
+ * 連結した出力は1つの有効なDeflateストリームとなる(pigzと同じ方式)。
+ * 未出力のブロック数には上限があるため、入力サイズに関わらずメモリ使用量は一定となる。
+ * 圧縮レベルはストリーム・ブロック毎に変更でき、無圧縮のストリームはCRC-32の計算のみを並列に行う。
+ * 先頭ブロックにも辞書(プリセット辞書)を指定でき、その場合は2番目以降のブロックと同様に辞書を参照して圧縮する。
+ * <p>
+ * 本クラスのメソッドは1つのスレッドから呼び出すこと。
+ */
+final class ParallelDeflater implements Closeable {
+    /** ブロックサイズのデフォルト値 */
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /** Deflateの辞書サイズ */
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /** 圧縮データの出力先 ※呼び出し元スレッドから投入順に呼ばれる */
+    interface Sink {
+        /**
+         * 圧縮データの出力
+         *
+         * @param b   圧縮データ
+         * @param off 開始位置
+         * @param len 長さ
+         * @throws IOException 入出力エラー
+         */
+        void write(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * ストリームの終了
+         *
+         * @param crc  元データのCRC-32
+         * @param size 元データのサイズ
+         * @throws IOException 入出力エラー
+         */
+        void finish(long crc, long size) throws IOException;
+    }
+
+    /** 投入順に実行する処理 */
+    interface OrderedAction {
+        void run() throws IOException;
+    }
+
+    /** 圧縮済みのブロック */
+    private static class Block {
+        private final byte[] data;
+        private final int length;
+        private final long crc;
+        private final int inputLength;
+
+        private Block(byte[] data, int length, long crc, int inputLength) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.inputLength = inputLength;
+        }
+    }
+
+    /** 出力待ち ※圧縮ブロックまたは投入順に実行する処理 */
+    private static class Pending {
+        private final Future<Block> future;
+        private final byte[] input;
+        private final DeflateStream stream;
+        private final boolean last;
+        private final OrderedAction action;
+
+        private Pending(Future<Block> future, byte[] input, DeflateStream stream, boolean last) {
+            this.future = future;
+            this.input = input;
+            this.stream = stream;
+            this.last = last;
+            this.action = null;
+        }
+
+        private Pending(OrderedAction action) {
+            this.future = null;
+            this.input = null;
+            this.stream = null;
+            this.last = false;
+            this.action = action;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int level;
+
+    /** 出力待ちの上限 */
+    private final int maxPending;
+
+    /** 入力バッファの上限 ※出力待ち分と読み込み中の分 */
+    private final int maxBuffers;
+
+    private final Deque<Pending> pendings = new ArrayDeque<>();
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+    private int allocatedBuffers;
+
+    /** ワーカースレッドで使い回すDeflater ※圧縮レベル毎(-1～9) */
+    private final List<ConcurrentLinkedQueue<Deflater>> deflaters = new ArrayList<>();
+
+    /**
+     * @param parallelism 圧縮スレッド数
+     * @param blockSize   ブロックサイズ
+     * @param level       圧縮レベルのデフォルト値
+     */
+    protected ParallelDeflater(int parallelism, int blockSize, int level) {
+        if (parallelism < 1) {
+            throw new GZipRuntimeException("並列数は1以上を指定してください。(" + parallelism + ")");
+        }
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new GZipRuntimeException("ブロックサイズは" + DICTIONARY_SIZE + "以上を指定してください。(" + blockSize + ")");
+        }
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "deflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.blockSize = blockSize;
+        this.level = level;
+        this.maxPending = parallelism * 2;
+        this.maxBuffers = maxPending + 2;
+        for (int i = Deflater.DEFAULT_COMPRESSION; i <= Deflater.BEST_COMPRESSION; i++) {
+            deflaters.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Deflateストリームの開始
+     *
+     * @param sink 圧縮データの出力先
+     * @return Deflateストリーム
+     * @throws IOException 入出力エラー
+     */
+    public DeflateStream open(Sink sink) throws IOException {
+        return open(sink, level);
+    }
+
+    /**
+     * Deflateストリームの開始
+     *
+     * @param sink  圧縮データの出力先
+     * @param level 圧縮レベル
+     * @return Deflateストリーム
+     * @throws IOException 入出力エラー
+     */
+    public DeflateStream open(Sink sink, int level) throws IOException {
+        return new DeflateStream(sink, level, false);
+    }
+
+    /**
+     * 辞書付きのDeflateストリームの開始 ※展開時にも同じ辞書が必要
+     *
+     * @param sink       圧縮データの出力先
+     * @param dictionary 先頭ブロックの辞書 ※{@link #DICTIONARY_SIZE} 以下
+     * @return Deflateストリーム
+     * @throws IOException 入出力エラー
+     */
+    public DeflateStream open(Sink sink, byte[] dictionary) throws IOException {
+        DeflateStream stream = new DeflateStream(sink, level, false);
+        stream.dictionary = dictionary;
+        return stream;
+    }
+
+    /**
+     * 無圧縮ストリームの開始 ※元データをそのまま出力する
+     *
+     * @param sink 元データの出力先
+     * @return 無圧縮ストリーム
+     * @throws IOException 入出力エラー
+     */
+    public DeflateStream openStored(Sink sink) throws IOException {
+        return new DeflateStream(sink, level, true);
+    }
+
+    /**
+     * 投入済みのブロックの出力後に実行する処理を追加
+     *
+     * @param action 処理
+     * @throws IOException 入出力エラー
+     */
+    public void enqueue(OrderedAction action) throws IOException {
+        pendings.add(new Pending(action));
+        drainExcess();
+    }
+
+    /**
+     * 投入済みの全ブロックを出力する
+     *
+     * @throws IOException 入出力エラー
+     */
+    public void flush() throws IOException {
+        while (!pendings.isEmpty()) {
+            drainHead();
+        }
+    }
+
+    @Override public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ConcurrentLinkedQueue<Deflater> queue : deflaters) {
+            Deflater deflater;
+            while ((deflater = queue.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * 1つのDeflateストリーム
+     * <p>
+     * 書き込まれたデータをブロック単位で圧縮に投入する。
+     * ブロックが一杯になっても続きのデータが来るまでは最終ブロックか判定できないため、投入を保留する。
+     */
+    final class DeflateStream {
+        private final Sink sink;
+
+        /** 無圧縮か */
+        private final boolean stored;
+
+        /** 次に投入するブロックの圧縮レベル */
+        private int level;
+
+        /** 投入を保留しているブロック */
+        private byte[] current;
+        private int currentLength;
+
+        /** 次のブロックの辞書 */
+        private byte[] dictionary;
+
+        /** 出力済みの元データのCRC-32・サイズ */
+        private long crc;
+        private long size;
+
+        private DeflateStream(Sink sink, int level, boolean stored) throws IOException {
+            this.sink = sink;
+            this.level = level;
+            this.stored = stored;
+            this.current = acquireBuffer();
+        }
+
+        /**
+         * 圧縮レベルの変更 ※以降に投入するブロックに適用する
+         *
+         * @param level 圧縮レベル
+         */
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        /**
+         * データの書き込み
+         *
+         * @param b   データ
+         * @param off 開始位置
+         * @param len 長さ
+         * @throws IOException 入出力エラー
+         */
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (currentLength == blockSize) {
+                    submit(false);
+                    current = acquireBuffer();
+                }
+                int n = Math.min(len, blockSize - currentLength);
+                System.arraycopy(b, off, current, currentLength, n);
+                currentLength += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * 入力ストリームの終端までを書き込む ※ブロックへ直接読み込む
+         *
+         * @param in 入力ストリーム
+         * @throws IOException 入出力エラー
+         */
+        public void transferFrom(InputStream in) throws IOException {
+            while (true) {
+                if (currentLength == blockSize) {
+                    byte[] next = acquireBuffer();
+                    int n = in.read(next, 0, blockSize);
+                    if (n < 0) {
+                        releaseBuffer(next);
+                        return;
+                    }
+                    submit(false);
+                    current = next;
+                    currentLength = n;
+                    continue;
+                }
+                int n = in.read(current, currentLength, blockSize - currentLength);
+                if (n < 0) {
+                    return;
+                }
+                currentLength += n;
+            }
+        }
+
+        /**
+         * ストリームの終了 ※最終ブロックを投入する
+         *
+         * @throws IOException 入出力エラー
+         */
+        public void close() throws IOException {
+            submit(true);
+        }
+
+        private void submit(boolean last) throws IOException {
+            byte[] input = current;
+            int length = currentLength;
+            Future<Block> future;
+            if (stored) {
+                future = executor.submit(() -> store(input, length));
+            } else {
+                byte[] dict = dictionary;
+                int blockLevel = level;
+                future = executor.submit(() -> deflate(input, length, dict, last, blockLevel));
+
+                // 次のブロックは本ブロックの末尾を辞書とする
+                dictionary = last ? null : Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+            }
+            current = null;
+            currentLength = 0;
+
+            pendings.add(new Pending(future, input, this, last));
+            drainExcess();
+        }
+
+        private void deliver(Block block, boolean last) throws IOException {
+            sink.write(block.data, 0, block.length);
+            crc = crc32Combine(crc, block.crc, block.inputLength);
+            size += block.inputLength;
+            if (last) {
+                sink.finish(crc, size);
+            }
+        }
+    }
+
+    /**
+     * ブロックの圧縮 ※ワーカースレッドで実行
+     *
+     * @param input      入力
+     * @param length     入力の長さ
+     * @param dictionary 辞書(先頭ブロックはプリセット辞書またはnull)
+     * @param last       最終ブロックか
+     * @param level      圧縮レベル
+     * @return 圧縮済みのブロック
+     */
+    private Block deflate(byte[] input, int length, byte[] dictionary, boolean last, int level) {
+        ConcurrentLinkedQueue<Deflater> queue = deflaters.get(level - Deflater.DEFAULT_COMPRESSION);
+        Deflater deflater = queue.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.reset();
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, length);
+
+            byte[] out = new byte[length + (length >> 4) + 64];
+            int outLength = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (outLength == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    outLength += deflater.deflate(out, outLength, out.length - outLength);
+                }
+            } else {
+                while (true) {
+                    int n = deflater.deflate(out, outLength, out.length - outLength, Deflater.SYNC_FLUSH);
+                    outLength += n;
+                    if (outLength < out.length) {
+                        break;
+                    }
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(input, 0, length);
+            return new Block(out, outLength, crc.getValue(), length);
+        } finally {
+            queue.add(deflater);
+        }
+    }
+
+    /**
+     * 無圧縮ブロック ※ワーカースレッドで実行
+     *
+     * @param input  入力
+     * @param length 入力の長さ
+     * @return 入力をそのまま出力するブロック
+     */
+    private Block store(byte[] input, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, length);
+        return new Block(input, length, crc.getValue(), length);
+    }
+
+    private void drainExcess() throws IOException {
+        while (pendings.size() > maxPending) {
+            drainHead();
+        }
+    }
+
+    private void drainHead() throws IOException {
+        Pending pending = pendings.poll();
+        if (pending.action != null) {
+            pending.action.run();
+            return;
+        }
+        try {
+            Block block = pending.future.get();
+            pending.stream.deliver(block, pending.last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GZipRuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new GZipRuntimeException(e.getCause());
+        } finally {
+            // 無圧縮ブロックは入力バッファを出力するため、出力後に返却する
+            releaseBuffer(pending.input);
+        }
+    }
+
+    private byte[] acquireBuffer() throws IOException {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[blockSize];
+        }
+        // 出力待ちを消化して入力バッファを空ける
+        while ((buffer = freeBuffers.poll()) == null) {
+            drainHead();
+        }
+        return buffer;
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        freeBuffers.add(buffer);
+    }
+
+    /**
+     * 連結したデータのCRC-32を求める(zlibのcrc32_combineと同じ計算)
+     *
+     * @param crc1 前半のCRC-32
+     * @param crc2 後半のCRC-32
+     * @param len2 後半の長さ
+     * @return 連結したデータのCRC-32
+     */
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // 1ビット分のゼロを付加する演算子
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // 2ビット分、4ビット分
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // len2バイト分のゼロを付加する
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len2 >>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len2 >>= 1;
+        } while (len2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        int i = 0;
+        while (vec != 0) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+            vec >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 並列gzip圧縮の出力ストリーム
+ * <p>
+ * 書き込まれたデータを {@link ParallelDeflater} でブロック毎に並列圧縮し、1つの有効なgzipストリームとして出力する(pigzと同じ方式)。
+ * 本ストリームは1つのスレッドから書き込むこと。
+ */
+class ParallelGzipOutputStream extends OutputStream {
+    /** gzipヘッダー(Deflate・フラグなし・更新日時なし・OS不明) */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final ParallelDeflater deflater;
+    private final ParallelDeflater.DeflateStream stream;
+    private boolean finished;
+
+    /**
+     * @param out         出力先
+     * @param parallelism 圧縮スレッド数
+     * @param blockSize   ブロックサイズ
+     * @param level       圧縮レベル
+     * @throws IOException 入出力エラー
+     */
+    protected ParallelGzipOutputStream(OutputStream out, int parallelism, int blockSize, int level) throws IOException {
+        this.out = out;
+        this.deflater = new ParallelDeflater(parallelism, blockSize, level);
+        out.write(HEADER);
+        this.stream = deflater.open(new ParallelDeflater.Sink() {
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override public void finish(long crc, long size) throws IOException {
+                // トレーラー:CRC-32・元データのサイズ(下位32bit)
+                writeInt(crc);
+                writeInt(size);
+            }
+        });
+    }
+
+    /**
+     * 圧縮レベルの変更 ※以降に書き込むデータのブロックに適用する
+     *
+     * @param level 圧縮レベル
+     */
+    public void setLevel(int level) {
+        stream.setLevel(level);
+    }
+
+    @Override public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+        stream.write(b, off, len);
+    }
+
+    /**
+     * 圧縮を完了する ※出力先はクローズしない
+     *
+     * @throws IOException 入出力エラー
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        stream.close();
+        deflater.flush();
+    }
+
+    @Override public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            deflater.close();
+            out.close();
+        }
+    }
+
+    private void writeInt(long value) throws IOException {
+        out.write((int) value & 0xff);
+        out.write((int) (value >> 8) & 0xff);
+        out.write((int) (value >> 16) & 0xff);
+        out.write((int) (value >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 圧縮と並行した元ファイルの削除
+ * <p>
+ * 書き込み済みのエントリを一定量ずつまとめてディスクに同期し、ジャーナルに記録した後、
+ * 削除スレッドでディスク上のエントリを検証してから元ファイルを削除する。
+ * 同期はまとめた単位で1回のため、ファイル毎の同期は発生しない。
+ * 削除は次のエントリの圧縮と並行するため、ディスク使用量の最大は元ファイル郡と圧縮ファイルの合計より小さくなる。
+ */
+final class PipelinedDeleter implements AutoCloseable {
+    /** 同期する元ファイルの合計サイズ */
+    static final long GROUP_BYTES = 64L * 1024 * 1024;
+
+    /** 同期するファイル数 */
+    static final int GROUP_FILES = 256;
+
+    /** 同期した位置 ※エントリの区切り */
+    private static final class Checkpoint {
+        private final int entryCount;
+        private final long offset;
+
+        private Checkpoint(int entryCount, long offset) {
+            this.entryCount = entryCount;
+            this.offset = offset;
+        }
+    }
+
+    private final ZipWriter writer;
+    private final DeleteJournal journal;
+    private final GZipMetrics metrics = GZipMetrics.get();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "G-Zip-deleter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 同期前の元ファイル・エントリ */
+    private final List<Path> pendingPaths = new ArrayList<>();
+    private final List<ZipWriter.WrittenEntry> pendingEntries = new ArrayList<>();
+    private long pendingBytes;
+
+    /** 検証済みの位置 ※削除スレッドで更新する */
+    private volatile Checkpoint verified = new Checkpoint(0, 0);
+
+    /** 削除スレッドのエラー */
+    private volatile IOException failure;
+
+    /** 未処理のまとまりを削除しない ※削除スレッドを割り込むと書き込み先のチャネルが閉じるため、中断はこのフラグで行う */
+    private volatile boolean cancelled;
+
+    /**
+     * @param writer  書き込み先
+     * @param journal ジャーナル
+     */
+    PipelinedDeleter(ZipWriter writer, DeleteJournal journal) {
+        this.writer = writer;
+        this.journal = journal;
+    }
+
+    /**
+     * エントリの書き込み完了 ※書き込みスレッドから呼び出す
+     *
+     * @param path 元ファイル
+     * @param size 元ファイルのサイズ
+     * @throws IOException 入出力エラー・削除スレッドのエラー
+     */
+    void written(Path path, long size) throws IOException {
+        checkFailure();
+        pendingPaths.add(path);
+        pendingEntries.add(writer.getLastEntry());
+        pendingBytes += size;
+        if (pendingPaths.size() >= GROUP_FILES || pendingBytes >= GROUP_BYTES) {
+            commit();
+        }
+    }
+
+    /**
+     * 残りの元ファイルの削除 ※圧縮ファイルの完了({@link ZipWriter#finish()})後に呼び出す
+     *
+     * @throws IOException 入出力エラー・削除スレッドのエラー
+     */
+    void finish() throws IOException {
+        commit();
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GZipRuntimeException(e);
+        }
+        checkFailure();
+        journal.complete();
+    }
+
+    /**
+     * 検証済みの位置までのエントリで圧縮ファイルを完了する ※失敗・キャンセルした場合。削除スレッドは停止する
+     *
+     * @return 残したエントリ数 ※0の場合は圧縮ファイルは不要
+     * @throws IOException 入出力エラー
+     */
+    int rollback() throws IOException {
+        close();
+        Checkpoint checkpoint = verified;
+        if (checkpoint.entryCount > 0) {
+            writer.rewind(checkpoint.entryCount, checkpoint.offset);
+            writer.finish();
+            writer.sync();
+        }
+        return checkpoint.entryCount;
+    }
+
+    private void commit() throws IOException {
+        if (pendingPaths.isEmpty()) {
+            return;
+        }
+        writer.sync();
+        Checkpoint checkpoint = new Checkpoint(writer.getEntryCount(), writer.getPosition());
+        journal.commit(checkpoint.offset, checkpoint.entryCount, pendingPaths);
+
+        List<Path> paths = new ArrayList<>(pendingPaths);
+        List<ZipWriter.WrittenEntry> entries = new ArrayList<>(pendingEntries);
+        pendingPaths.clear();
+        pendingEntries.clear();
+        pendingBytes = 0;
+        executor.execute(() -> delete(paths, entries, checkpoint));
+    }
+
+    /**
+     * 削除スレッドの処理 ※全エントリを検証してから元ファイルを削除する
+     */
+    private void delete(List<Path> paths, List<ZipWriter.WrittenEntry> entries, Checkpoint checkpoint) {
+        if (failure != null || cancelled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            for (ZipWriter.WrittenEntry entry : entries) {
+                writer.verify(entry);
+            }
+            verified = checkpoint;
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            failure = e;
+            return;
+        } catch (RuntimeException e) {
+            failure = new IOException("元ファイルを削除できません。", e);
+            return;
+        }
+        metrics.record(GZipMetrics.Phase.DELETE, start);
+        metrics.addFilesDeleted(paths.size());
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Override public void close() {
+        cancelled = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
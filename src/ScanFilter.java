@@ -0,0 +1,124 @@
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiPredicate;
+
+/**
+ * ファイルフィルター
+ * <p>
+ * 検索開始時の条件を保持する不変オブジェクトで、走査スレッドから画面部品を参照しない。
+ * 拡張子は大文字小文字を区別しない末尾比較、更新日は基準日時(エポックミリ秒)との比較のみで判定する。
+ */
+final class ScanFilter implements BiPredicate<Path, BasicFileAttributes> {
+    /** 対象拡張子(小文字) */
+    private final String[] extensions;
+
+    /** 「*.拡張子.数値」も対象とする拡張子(小文字) */
+    private final String[] rotatedExtensions;
+
+    /** 最終更新日時がこれより前のファイルを対象とする(エポックミリ秒) */
+    private final long cutoffMillis;
+
+    /**
+     * @param extensions        対象拡張子
+     * @param rotatedExtensions 「*.拡張子.数値」も対象とする拡張子
+     * @param cutoffMillis      最終更新日時の基準(エポックミリ秒)
+     */
+    protected ScanFilter(Collection<String> extensions, Collection<String> rotatedExtensions, long cutoffMillis) {
+        this.extensions = toLowerCase(extensions);
+        this.rotatedExtensions = toLowerCase(rotatedExtensions);
+        this.cutoffMillis = cutoffMillis;
+    }
+
+    /**
+     * 検索条件からファイルフィルターを生成 ※logファイルは「*.log.数値」も含める
+     *
+     * @param extensions 対象拡張子
+     * @param dlm        最終更新日
+     * @return ファイルフィルター
+     */
+    static ScanFilter create(Collection<String> extensions, DateLastModified dlm) {
+        String log = Extension.LOG.getExtName();
+        List<String> rotatedExtensions = extensions.contains(log) ? Collections.singletonList(log) : Collections.emptyList();
+        return new ScanFilter(extensions, rotatedExtensions, dlm.getCutoffMillis());
+    }
+
+    private static String[] toLowerCase(Collection<String> extensions) {
+        return extensions.stream().map(ext -> ext.toLowerCase(Locale.ROOT)).distinct().toArray(String[]::new);
+    }
+
+    @Override public boolean test(Path path, BasicFileAttributes attrs) {
+        return isMatchedDate(attrs.lastModifiedTime().toMillis()) && isMatchedExtension(path.getFileName().toString());
+    }
+
+    /**
+     * 拡張子フィルター
+     *
+     * @param fileName ファイル名
+     * @return 合致したらtrue
+     */
+    public boolean isMatchedExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0) {
+            // 拡張子なし、または拡張子の前にファイル名がない
+            return false;
+        }
+        if (matchesAny(extensions, fileName, dot + 1, fileName.length())) {
+            return true;
+        }
+        if (rotatedExtensions.length == 0 || !isDigits(fileName, dot + 1)) {
+            return false;
+        }
+
+        // 「*.拡張子.数値」の判定
+        int extDot = fileName.lastIndexOf('.', dot - 1);
+        return extDot > 0 && matchesAny(rotatedExtensions, fileName, extDot + 1, dot);
+    }
+
+    /**
+     * ローテーションしたファイルの系列名 ※「*.拡張子.数値」は数値を除いたファイル名
+     *
+     * @param fileName ファイル名
+     * @return 系列名 ※数値で終わらない場合はファイル名のまま
+     */
+    static String toFamilyName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && isDigits(fileName, dot + 1) ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * 更新日フィルター
+     *
+     * @param lastModified 最終更新日時(エポックミリ秒)
+     * @return 合致したらtrue
+     */
+    public boolean isMatchedDate(long lastModified) {
+        return lastModified < cutoffMillis;
+    }
+
+    private static boolean matchesAny(String[] candidates, String fileName, int begin, int end) {
+        int len = end - begin;
+        for (String candidate : candidates) {
+            if (candidate.length() == len && fileName.regionMatches(true, begin, candidate, 0, len)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDigits(String str, int begin) {
+        if (begin >= str.length()) {
+            return false;
+        }
+        for (int i = begin; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
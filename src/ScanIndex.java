@@ -0,0 +1,202 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 走査の索引
+ * <p>
+ * 作業ディレクトリ毎に、各ディレクトリの最終更新日時とエントリ(名前・種類)を走査順に保存する。
+ * ディレクトリの最終更新日時はエントリの追加・削除・名前変更で更新されるため、
+ * 前回から変わっていないディレクトリはエントリの一覧を読み込まずに索引から復元できる。
+ * ファイルの内容の変更ではディレクトリの最終更新日時は変わらないため、ファイルの属性は保存せず毎回取得する。
+ */
+final class ScanIndex {
+    private static final Logger LOGGER = Logger.getLogger(ScanIndex.class.getName());
+
+    /** 索引ファイルの識別子・形式のバージョン */
+    private static final int MAGIC = 0x475a4958;
+    private static final int VERSION = 1;
+
+    /** 索引ファイルの拡張子 */
+    private static final String SUFFIX = ".idx";
+
+    /** 作成途中の索引ファイルの拡張子 */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * 前回の走査開始に近い時刻に更新されたディレクトリは索引を使用しない(ミリ秒)
+     * ※最終更新日時の精度が粗いファイルシステム(FATは2秒)で、走査中の更新を見逃さないため
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    /** エントリの種類 ※シンボリックリンク等のディレクトリ以外はファイルとして扱う */
+    static final byte TYPE_FILE = 0;
+    static final byte TYPE_DIRECTORY = 1;
+
+    /** 1ディレクトリ分の索引 */
+    static final class Node {
+        private final long lastModified;
+
+        /** エントリ ※走査順 */
+        private final List<String> names = new ArrayList<>();
+        private final List<Byte> types = new ArrayList<>();
+
+        /** サブディレクトリの索引 ※エントリ名 → 索引 */
+        private final Map<String, Node> children = new HashMap<>();
+
+        Node(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        void add(String name, byte type, Node child) {
+            names.add(name);
+            types.add(type);
+            if (child != null) {
+                children.put(name, child);
+            }
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        String getName(int i) {
+            return names.get(i);
+        }
+
+        byte getType(int i) {
+            return types.get(i);
+        }
+
+        Node getChild(String name) {
+            return children.get(name);
+        }
+    }
+
+    /** 索引ファイル */
+    private final Path indexFile;
+
+    /** 作業ディレクトリ(絶対パス) ※索引ファイル名の衝突の検出用 */
+    private final String rootName;
+
+    /** 前回の走査開始日時(エポックミリ秒) */
+    private final long scannedAt;
+
+    /** 作業ディレクトリの索引 ※前回の走査がない場合はnull */
+    private final Node root;
+
+    private ScanIndex(Path indexFile, String rootName, long scannedAt, Node root) {
+        this.indexFile = indexFile;
+        this.rootName = rootName;
+        this.scannedAt = scannedAt;
+        this.root = root;
+    }
+
+    /**
+     * 索引の読み込み ※存在しない・読み込めない場合は空の索引
+     *
+     * @param indexDir  索引の保存先
+     * @param startPath 作業ディレクトリ
+     * @return 索引
+     */
+    static ScanIndex load(Path indexDir, Path startPath) {
+        String rootName = startPath.toAbsolutePath().normalize().toString();
+        Path indexFile = indexDir.resolve(UUID.nameUUIDFromBytes(rootName.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+        if (Files.notExists(indexFile)) {
+            return new ScanIndex(indexFile, rootName, 0, null);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(rootName)) {
+                return new ScanIndex(indexFile, rootName, 0, null);
+            }
+            long scannedAt = in.readLong();
+            return new ScanIndex(indexFile, rootName, scannedAt, readNode(in));
+        } catch (IOException e) {
+            // 壊れた索引は使用せず、全体を走査する
+            LOGGER.log(Level.WARNING, "索引を読み込めません。(" + indexFile + ")", e);
+            return new ScanIndex(indexFile, rootName, 0, null);
+        }
+    }
+
+    private static Node readNode(DataInputStream in) throws IOException {
+        Node node = new Node(in.readLong());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            byte type = in.readByte();
+            String name = in.readUTF();
+            node.add(name, type, type == TYPE_DIRECTORY ? readNode(in) : null);
+        }
+        return node;
+    }
+
+    /**
+     * 索引の保存 ※失敗しても走査結果には影響しないため、ログのみ出力する
+     *
+     * @param scannedAt 走査開始日時(エポックミリ秒)
+     * @param root      作業ディレクトリの索引
+     */
+    void save(long scannedAt, Node root) {
+        // 作成途中のファイルを索引として読み込まないよう、一時ファイルに書き込んでから名前を変更する
+        Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + TMP_SUFFIX);
+        try {
+            Files.createDirectories(indexFile.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(rootName);
+                out.writeLong(scannedAt);
+                writeNode(out, root);
+            }
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "索引を保存できません。(" + indexFile + ")", e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "一時ファイルを削除できません。(" + tmpFile + ")", e);
+            }
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        out.writeLong(node.lastModified);
+        out.writeInt(node.size());
+        for (int i = 0; i < node.size(); i++) {
+            byte type = node.getType(i);
+            out.writeByte(type);
+            out.writeUTF(node.getName(i));
+            if (type == TYPE_DIRECTORY) {
+                writeNode(out, node.getChild(node.getName(i)));
+            }
+        }
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * 索引のエントリを使用できるか
+     *
+     * @param node         前回のディレクトリの索引 ※ない場合はnull
+     * @param lastModified ディレクトリの最終更新日時(エポックミリ秒)
+     * @return 前回から更新されていない場合はtrue
+     */
+    boolean isUnchanged(Node node, long lastModified) {
+        return node != null && node.lastModified == lastModified && lastModified < scannedAt - RACY_MILLIS;
+    }
+}
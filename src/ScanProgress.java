@@ -0,0 +1,117 @@
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 検索の進捗
+ * <p>
+ * 走査スレッドはカウンターを加算するだけで、画面側は一定間隔で参照する。
+ * カウンターは {@link LongAdder} のため、並列走査でもスレッド間で競合しない。
+ * ファイル毎のログはデバッグレベル(FINE)の場合のみ出力する。
+ */
+class ScanProgress implements FileScanner.Listener {
+    private static final Logger LOGGER = Logger.getLogger(ScanProgress.class.getName());
+
+    /** 開始日時(ナノ秒) */
+    private final long startNanos = System.nanoTime();
+
+    /** 訪問済みファイル数・サイズ */
+    private final LongAdder visitedFiles = new LongAdder();
+    private final LongAdder visitedBytes = new LongAdder();
+
+    /** フィルターに合致したファイル数 */
+    private final LongAdder matchedFiles = new LongAdder();
+
+    /** 走査完了した直下のエントリ数・直下のエントリ数 */
+    private volatile int done;
+    private volatile int total;
+
+    /** 最後に訪問したファイル ※表示用のため厳密でなくてよい */
+    private volatile Path lastVisited;
+
+    @Override public void visited(Path path, BasicFileAttributes attrs) {
+        visitedFiles.increment();
+        visitedBytes.add(attrs.size());
+        lastVisited = path;
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(path + " (" + Thread.currentThread().getName() + ")");
+        }
+    }
+
+    @Override public void matched(ScannedFile file) {
+        matchedFiles.increment();
+    }
+
+    @Override public void progress(int done, int total) {
+        this.total = total;
+        this.done = done;
+    }
+
+    public long getVisitedFiles() {
+        return visitedFiles.sum();
+    }
+
+    public long getVisitedBytes() {
+        return visitedBytes.sum();
+    }
+
+    public long getMatchedFiles() {
+        return matchedFiles.sum();
+    }
+
+    public Path getLastVisited() {
+        return lastVisited;
+    }
+
+    /**
+     * 進捗率 ※作業ディレクトリ直下のエントリ単位
+     *
+     * @return 0～100
+     */
+    public int getPercentage() {
+        int total = this.total;
+        if (total <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, (long) done * 100 / total);
+    }
+
+    /**
+     * 処理速度
+     *
+     * @return ファイル数/秒
+     */
+    public long getFilesPerSecond() {
+        return perSecond(getVisitedFiles());
+    }
+
+    /**
+     * 処理速度
+     *
+     * @return バイト/秒
+     */
+    public long getBytesPerSecond() {
+        return perSecond(getVisitedBytes());
+    }
+
+    /**
+     * 経過時間
+     *
+     * @return ミリ秒
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private long perSecond(long count) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return (long) (count / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+}
@@ -0,0 +1,41 @@
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 検索で見つかったファイル
+ * <p>
+ * 走査時に取得した属性を保持し、フィルター・一覧表示で再度ファイル属性を読み込まないようにする。
+ */
+class ScannedFile {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+
+    protected ScannedFile(Path path, BasicFileAttributes attrs) {
+        this(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    protected ScannedFile(Path path, long size, long lastModified) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return ファイルサイズ(バイト)
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return 最終更新日時(エポックミリ秒)
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 設定ファイル
+ * <p>
+ * 画面とバッチで共通の設定を保持する。画面部品には依存しない。
+ */
+final class Settings {
+    /** 設定ファイル名 */
+    static final String SETTING_PROPERTIES = "G-Zip.properties";
+
+    /** 走査の索引の保存先 ※設定ファイルと同じディレクトリ */
+    private static final String INDEX_DIR = "G-Zip.index";
+
+    /** 文字コード */
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    enum PropKeys {
+        WORK_DIR("TextField.workDir"),
+        EXTENSION("ComboBox.extension"),
+        LAST_MODIFIED_DATE("ComboBox.lastModifiedDate"),
+        SCAN_MODE("Scan.mode"),
+        SCAN_PARALLELISM("Scan.parallelism"),
+        SCAN_LIVE("Scan.live"),
+        COMPRESS_BUFFER_SIZE("Compress.bufferSize"),
+        COMPRESS_PARALLELISM("Compress.parallelism"),
+        COMPRESS_FORMAT("Compress.format"),
+        COMPRESS_LEVEL("Compress.level"),
+        COMPRESS_VOLUME_SIZE("Compress.volumeSize"),
+        COMPRESS_PIPELINED_DELETE("Compress.pipelinedDelete"),
+        COMPRESS_VERIFY("Compress.verify"),
+        COMPRESS_DEDUP("Compress.dedup"),
+        COMPRESS_DICTIONARY("Compress.dictionary"),
+        LOG_LEVEL("Log.level");
+
+        private final String key;
+
+        PropKeys(String key) {
+            this.key = key;
+        }
+    }
+
+    /** 区切り文字 ※拡張子の一覧 */
+    static final String SEPARATOR = ",";
+
+    private final Path configPath;
+    private final Properties properties = new Properties();
+
+    private Settings(Path configPath) {
+        this.configPath = configPath;
+    }
+
+    /**
+     * 設定ファイルの読み込み ※存在しない場合は空の設定
+     *
+     * @param configPath 設定ファイル
+     * @return 設定
+     */
+    static Settings load(Path configPath) {
+        Settings settings = new Settings(configPath);
+        if (Files.exists(configPath)) {
+            try (Reader reader = Files.newBufferedReader(configPath, CHARSET)) {
+                settings.properties.load(reader);
+            } catch (NoSuchFileException e) {
+                throw new GZipRuntimeException(configPath + " が見つかりません。", e);
+            } catch (IOException e) {
+                throw new GZipRuntimeException(e);
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * 設定ファイルへ保存
+     */
+    void store() {
+        if (Files.notExists(configPath)) {
+            // 設定ファイルが存在しない場合は新規作成する
+            try {
+                Files.createFile(configPath);
+            } catch (IOException e) {
+                throw new GZipRuntimeException(e);
+            }
+        }
+
+        try (Writer writer = Files.newBufferedWriter(configPath, CHARSET, StandardOpenOption.TRUNCATE_EXISTING)) {
+            properties.store(writer, null);
+        } catch (IOException e) {
+            throw new GZipRuntimeException(e);
+        }
+    }
+
+    void setProperty(PropKeys propKey, String value) {
+        properties.setProperty(propKey.key, value);
+    }
+
+    String getWorkDir() {
+        return properties.getProperty(PropKeys.WORK_DIR.key, System.getProperty("user.dir"));
+    }
+
+    String getExtension() {
+        return properties.getProperty(PropKeys.EXTENSION.key, "");
+    }
+
+    String getLastModifiedDate() {
+        return properties.getProperty(PropKeys.LAST_MODIFIED_DATE.key, "");
+    }
+
+    OutputFormat getCompressFormat() {
+        return OutputFormat.getByFormatName(properties.getProperty(PropKeys.COMPRESS_FORMAT.key, OutputFormat.ZIP.getFormatName()));
+    }
+
+    CompressionLevel getCompressLevel() {
+        return CompressionLevel.getByLevelName(properties.getProperty(PropKeys.COMPRESS_LEVEL.key, CompressionLevel.DEFAULT.getLevelName()));
+    }
+
+    FileScanner.Mode getScanMode() {
+        return FileScanner.Mode.getByModeName(properties.getProperty(PropKeys.SCAN_MODE.key, FileScanner.Mode.SEQUENTIAL.toString()));
+    }
+
+    /**
+     * @return 索引付き走査({@link FileScanner.Mode#INDEXED})の索引の保存先
+     */
+    Path getIndexDir() {
+        return configPath.resolveSibling(INDEX_DIR);
+    }
+
+    /**
+     * @return 検索後に作業ディレクトリを監視して一覧を更新するか
+     */
+    boolean isScanLive() {
+        return Boolean.parseBoolean(properties.getProperty(PropKeys.SCAN_LIVE.key, Boolean.FALSE.toString()));
+    }
+
+    int getScanParallelism() {
+        return getIntProperty(PropKeys.SCAN_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    int getCompressBufferSize() {
+        return getIntProperty(PropKeys.COMPRESS_BUFFER_SIZE, Archiver.DEFAULT_BUFFER_SIZE);
+    }
+
+    int getCompressParallelism() {
+        return getIntProperty(PropKeys.COMPRESS_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * zip形式の分割サイズ ※数値の後に単位(K / M / G)を付けられる(例: 4G)
+     *
+     * @return ボリュームの上限サイズ(バイト) ※0は分割しない
+     */
+    long getCompressVolumeSize() {
+        String value = properties.getProperty(PropKeys.COMPRESS_VOLUME_SIZE.key, "0").trim();
+        int shift = 0;
+        if (!value.isEmpty()) {
+            switch (Character.toUpperCase(value.charAt(value.length() - 1))) {
+                case 'K':
+                    shift = 10;
+                    break;
+                case 'M':
+                    shift = 20;
+                    break;
+                case 'G':
+                    shift = 30;
+                    break;
+                default:
+                    break;
+            }
+        }
+        try {
+            return Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 1).trim()) << shift;
+        } catch (NumberFormatException e) {
+            throw new GZipRuntimeException(PropKeys.COMPRESS_VOLUME_SIZE.key + " がサイズではありません。(" + value + ")", e);
+        }
+    }
+
+    /**
+     * 元ファイルを圧縮と並行して削除するか ※zip形式(分割しない場合)のみ
+     *
+     * @return 並行して削除する場合はtrue
+     */
+    boolean isCompressPipelinedDelete() {
+        return Boolean.parseBoolean(properties.getProperty(PropKeys.COMPRESS_PIPELINED_DELETE.key, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * 圧縮後に圧縮ファイルを検証するか ※zip形式のみ。元ファイルの削除は検証後に行う
+     *
+     * @return 検証する場合はtrue
+     */
+    boolean isCompressVerify() {
+        return Boolean.parseBoolean(properties.getProperty(PropKeys.COMPRESS_VERIFY.key, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * 同じ内容のファイルを1エントリにまとめるか ※zip形式(分割しない場合)のみ。他は一覧に記録し、展開時にコピーする
+     *
+     * @return まとめる場合はtrue
+     */
+    boolean isCompressDedup() {
+        return Boolean.parseBoolean(properties.getProperty(PropKeys.COMPRESS_DEDUP.key, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * ローテーションしたログの系列毎に共通の辞書で圧縮するか ※zip形式(分割しない場合)のみ。展開はG-Zipのみ
+     *
+     * @return 辞書で圧縮する場合はtrue
+     */
+    boolean isCompressDictionary() {
+        return Boolean.parseBoolean(properties.getProperty(PropKeys.COMPRESS_DICTIONARY.key, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * ログレベルの適用 ※FINEでファイル毎のログを出力する
+     */
+    void applyLogLevel() {
+        String value = properties.getProperty(PropKeys.LOG_LEVEL.key, Level.INFO.getName());
+        Level level;
+        try {
+            level = Level.parse(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new GZipRuntimeException(PropKeys.LOG_LEVEL.key + " がログレベルではありません。(" + value + ")", e);
+        }
+        Logger rootLogger = Logger.getLogger("");
+        rootLogger.setLevel(level);
+        for (Handler handler : rootLogger.getHandlers()) {
+            handler.setLevel(level);
+        }
+    }
+
+    private int getIntProperty(PropKeys propKey, int defaultValue) {
+        String value = properties.getProperty(propKey.key, String.valueOf(defaultValue));
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new GZipRuntimeException(propKey.key + " が数値ではありません。(" + value + ")", e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 分割Zip圧縮
+ * <p>
+ * 圧縮ファイルを「名前.001.zip」「名前.002.zip」…の複数ボリュームに分け、各ボリュームは単独で展開できるZipとする。
+ * ファイルの順にボリュームへ書き込み、書き込み済みのサイズに次のエントリの最大サイズ(無圧縮で格納した場合のサイズ)を
+ * 加えても上限を超えない場合はそのまま書き込む。最大サイズでは超える場合は試しに書き込み、圧縮後のサイズで上限を超えた場合のみ
+ * エントリ(ローカルヘッダー・圧縮データ)を次のボリュームへ移す。ボリュームのサイズは圧縮後のサイズで決まるため、圧縮率によらず上限に近くなる。
+ * <p>
+ * 圧縮は全ボリュームで1つの {@link ParallelDeflater} を共有するため、ボリュームは順に書き込むが、
+ * 全スレッドで複数エントリ分のブロックを並列に圧縮する。未出力のエントリは最大サイズで見積もり、
+ * 上限を超えそうな場合のみ出力を待って書き込み済みのサイズで判定し直す。
+ * 圧縮後のサイズが上限より大きいファイルは分割できないため、1ファイルのみのボリュームとする。
+ */
+class SplitZipArchiver extends Archiver {
+    private static final Logger LOGGER = Logger.getLogger(SplitZipArchiver.class.getName());
+
+    /** ボリューム番号の桁数 */
+    private static final String VOLUME_FORMAT = "%03d";
+
+    /** エントリ毎のローカルヘッダー(Zip64拡張を含む)の最大サイズ ※エントリ名を除く */
+    private static final long LOCAL_OVERHEAD = 30 + 20;
+
+    /** エントリ毎のセントラルディレクトリ(Zip64拡張を含む)の最大サイズ ※エントリ名を除く */
+    private static final long CENTRAL_OVERHEAD = 46 + 28;
+
+    /** ボリューム毎の終端(Zip64を含む)の最大サイズ */
+    private static final long END_OVERHEAD = 56 + 20 + 22;
+
+    /** ボリュームの上限サイズ */
+    private final long volumeSize;
+
+    /** 書き込み中のボリューム ※サイズの見積もりは書き込みスレッドのみで更新する */
+    private final class Volume implements Closeable {
+        private final Path path;
+        private final ZipWriter writer;
+
+        /** 書き込み前のエントリの最大サイズの合計 ※エントリの終了時に除く */
+        private long pendingBytes;
+
+        /** セントラルディレクトリの最大サイズ */
+        private long centralBytes;
+
+        private Volume(Path volumePath) throws IOException {
+            if (Files.exists(volumePath)) {
+                throw new FileAlreadyExistsException(volumePath.toString());
+            }
+            path = volumePath;
+            writer = new ZipWriter(volumePath, Charset.defaultCharset());
+        }
+
+        /**
+         * 完了時の最大サイズ ※未出力のエントリは最大サイズで見積もる
+         */
+        private long getMaxSize() {
+            return writer.getPosition() + pendingBytes + centralBytes + END_OVERHEAD;
+        }
+
+        /**
+         * エントリを追加しても上限を超えないか
+         */
+        private boolean fits(long localBytes, long centralEntryBytes) {
+            return getMaxSize() + localBytes + centralEntryBytes <= volumeSize;
+        }
+
+        private void add(ParallelDeflater deflater, Path path, long localBytes, long centralEntryBytes, CompressProgress progress) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            pendingBytes += localBytes;
+            centralBytes += centralEntryBytes;
+            ZipArchiver.writeEntry(writer, deflater, getEntryName(path), attrs.lastModifiedTime().toMillis(), attrs.size(),
+                    compressionLevel.shouldStore(path), null, progress.wrap(Files.newInputStream(path)), () -> pendingBytes -= localBytes);
+        }
+
+        /**
+         * 最後のエントリを次のボリュームへ移す ※出力済みであること
+         */
+        private void moveLastEntry(Volume next, long centralEntryBytes) throws IOException {
+            writer.moveLastEntry(next.writer);
+            centralBytes -= centralEntryBytes;
+            next.centralBytes += centralEntryBytes;
+        }
+
+        private void finish() throws IOException {
+            writer.finish();
+            if (writer.getPosition() > volumeSize) {
+                // 上限を超えたボリュームは圧縮後も上限より大きい1ファイルのみ
+                LOGGER.warning("分割サイズより大きいファイルは1ファイルのボリュームとしました。(" + path + ")");
+            }
+        }
+
+        @Override public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     * @param volumeSize       ボリュームの上限サイズ
+     */
+    protected SplitZipArchiver(String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel, long volumeSize) {
+        super(removeStr, bufferSize, parallelism, compressionLevel);
+        if (volumeSize <= END_OVERHEAD) {
+            throw new GZipRuntimeException("分割サイズは" + (END_OVERHEAD + 1) + "以上を指定してください。(" + volumeSize + ")");
+        }
+        this.volumeSize = volumeSize;
+    }
+
+    /**
+     * ボリュームのパスを取得
+     *
+     * @param zipFile 圧縮ファイル(名前.zip)
+     * @param volume  ボリューム番号(1～)
+     * @return 名前.001.zip
+     */
+    static Path getVolumePath(Path zipFile, int volume) {
+        String fileName = zipFile.getFileName().toString();
+        String extension = OutputFormat.ZIP.getExtension();
+        String baseName = fileName.endsWith(extension) ? fileName.substring(0, fileName.length() - extension.length()) : fileName;
+        return zipFile.resolveSibling(baseName + "." + String.format(VOLUME_FORMAT, volume) + extension);
+    }
+
+    @Override public List<Path> archive(List<Path> pathList, Path zipFile, CompressProgress progress) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        List<Path> volumePaths = new ArrayList<>();
+        Volume volume = null;
+        boolean completed = false;
+        try (ParallelDeflater deflater = new ParallelDeflater(parallelism, bufferSize, compressionLevel.getLevel())) {
+            for (Path path : pathList) {
+                long size = Files.size(path);
+                int nameLength = getEntryName(path).getBytes(charset).length;
+
+                // 圧縮しても大きくならない最大サイズ(ブロック毎のフラッシュ・無圧縮ブロックのヘッダーを含む)
+                long bound = size + (size >> 12) + (size >> 14) + 13 + 6 * (size / bufferSize + 1);
+                long localBytes = LOCAL_OVERHEAD + nameLength + bound;
+                long centralEntryBytes = CENTRAL_OVERHEAD + nameLength;
+
+                if (volume != null && !volume.fits(localBytes, centralEntryBytes)) {
+                    // 未出力のエントリを書き込み済みのサイズで判定し直す
+                    deflater.flush();
+                    if (!volume.fits(localBytes, centralEntryBytes)) {
+                        if (volume.fits(LOCAL_OVERHEAD + nameLength, centralEntryBytes)) {
+                            // 最大サイズでは超えても圧縮後のサイズでは収まる場合があるため、試しに書き込んで判定する
+                            volume.add(deflater, path, localBytes, centralEntryBytes, progress);
+                            deflater.flush();
+                            if (volume.getMaxSize() <= volumeSize) {
+                                continue;
+                            }
+                            // 収まらないエントリは圧縮し直さずに次のボリュームへ移す
+                            Volume next = openVolume(zipFile, volumePaths);
+                            try {
+                                volume.moveLastEntry(next, centralEntryBytes);
+                            } catch (IOException | RuntimeException e) {
+                                next.close();
+                                throw e;
+                            }
+                            volume.finish();
+                            volume.close();
+                            volume = next;
+                            continue;
+                        }
+                        volume.finish();
+                        volume.close();
+                        volume = null;
+                    }
+                }
+                if (volume == null) {
+                    volume = openVolume(zipFile, volumePaths);
+                }
+                volume.add(deflater, path, localBytes, centralEntryBytes, progress);
+            }
+            if (volume == null) {
+                volume = openVolume(zipFile, volumePaths);
+            }
+            deflater.flush();
+            volume.finish();
+            completed = true;
+        } finally {
+            if (volume != null) {
+                volume.close();
+            }
+            if (!completed) {
+                for (Path volumePath : volumePaths) {
+                    Files.deleteIfExists(volumePath);
+                }
+            }
+        }
+        return volumePaths;
+    }
+
+    /**
+     * 次のボリュームの作成
+     *
+     * @param zipFile     圧縮ファイル(名前.zip)
+     * @param volumePaths 作成済みのボリューム郡 ※作成したボリュームを追加する
+     * @return ボリューム
+     * @throws IOException 入出力エラー・同じ名前のファイルがある
+     */
+    private Volume openVolume(Path zipFile, List<Path> volumePaths) throws IOException {
+        Path volumePath = getVolumePath(zipFile, volumePaths.size() + 1);
+        Volume volume = new Volume(volumePath);
+        volumePaths.add(volumePath);
+        return volume;
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * tar.gz圧縮
+ * <p>
+ * tar形式(POSIX ustar、長いパス・8GB以上のファイルはpax拡張ヘッダー)で書き出し、{@link ParallelGzipOutputStream} で並列にgzip圧縮する。
+ */
+class TarArchiver extends Archiver {
+    /** tarのブロックサイズ */
+    private static final int BLOCK_SIZE = 512;
+
+    /** tarのレコードサイズ ※アーカイブ全体をこのサイズの倍数にする */
+    private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+    /** ustarヘッダーのファイル名の最大長 */
+    private static final int NAME_LENGTH = 100;
+
+    /** ustarヘッダーのプレフィックスの最大長 */
+    private static final int PREFIX_LENGTH = 155;
+
+    /** ustarヘッダーのサイズ欄に格納できる最大値(8進数11桁) */
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_PAX = 'x';
+
+    /**
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     */
+    protected TarArchiver(String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel) {
+        super(removeStr, bufferSize, parallelism, compressionLevel);
+    }
+
+    @Override public List<Path> archive(List<Path> pathList, Path tarGzFile, CompressProgress progress) throws IOException {
+        boolean completed = false;
+        try (OutputStream os = Files.newOutputStream(tarGzFile);
+                ParallelGzipOutputStream gos = new ParallelGzipOutputStream(new BufferedOutputStream(os, bufferSize), parallelism, bufferSize,
+                        compressionLevel.getLevel())) {
+            byte[] buffer = new byte[bufferSize];
+            long written = 0;
+            for (Path path : pathList) {
+                // 圧縮効果のないファイルのブロックは無圧縮とする
+                gos.setLevel(compressionLevel.shouldStore(path) ? Deflater.NO_COMPRESSION : compressionLevel.getLevel());
+                written += writeEntry(gos, path, buffer, progress);
+            }
+
+            // 終端:空ブロック2つとレコード境界までのパディング
+            long end = written + 2 * BLOCK_SIZE;
+            end += (RECORD_SIZE - end % RECORD_SIZE) % RECORD_SIZE;
+            writeZeros(gos, end - written);
+
+            gos.finish();
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(tarGzFile);
+            }
+        }
+        return Collections.singletonList(tarGzFile);
+    }
+
+    /**
+     * エントリ名の取得 ※tarの区切り文字は「/」
+     *
+     * @param path ファイルパス
+     * @return 作業ディレクトリからの相対パス
+     */
+    @Override public String getEntryName(Path path) {
+        return super.getEntryName(path).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 1ファイル分のエントリを書き込む
+     *
+     * @param out      出力先
+     * @param path     ファイルパス
+     * @param buffer   読み込みバッファ
+     * @param progress 進捗
+     * @return 書き込んだバイト数
+     * @throws IOException 入出力エラー
+     */
+    private long writeEntry(OutputStream out, Path path, byte[] buffer, CompressProgress progress) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        String entryName = getEntryName(path);
+        long size = attrs.size();
+        long mtime = Math.max(0, attrs.lastModifiedTime().toMillis() / 1000);
+
+        long written = 0;
+        byte[] nameBytes = entryName.getBytes(StandardCharsets.UTF_8);
+        String[] ustarName = splitName(nameBytes);
+        if (ustarName == null || size > MAX_OCTAL_SIZE) {
+            // ustarヘッダーに収まらない項目はpax拡張ヘッダーで渡す
+            Map<String, String> records = new LinkedHashMap<>();
+            if (ustarName == null) {
+                records.put("path", entryName);
+            }
+            if (size > MAX_OCTAL_SIZE) {
+                records.put("size", String.valueOf(size));
+            }
+            byte[] pax = toPaxRecords(records);
+            out.write(createHeader(truncate(nameBytes, NAME_LENGTH), "", pax.length, mtime, TYPE_PAX));
+            out.write(pax);
+            writeZeros(out, padding(pax.length));
+            written += BLOCK_SIZE + pax.length + padding(pax.length);
+
+            if (ustarName == null) {
+                ustarName = new String[]{"", truncate(nameBytes, NAME_LENGTH)};
+            }
+        }
+        out.write(createHeader(ustarName[1], ustarName[0], Math.min(size, MAX_OCTAL_SIZE), mtime, TYPE_FILE));
+        written += BLOCK_SIZE;
+
+        // ヘッダーに書いたサイズ分だけ書き込む
+        try (InputStream is = progress.wrap(Files.newInputStream(path))) {
+            long remaining = size;
+            while (remaining > 0) {
+                int len = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len < 0) {
+                    throw new EOFException("圧縮中にファイルサイズが変化しました。(" + path + ")");
+                }
+                out.write(buffer, 0, len);
+                remaining -= len;
+            }
+        }
+        writeZeros(out, padding(size));
+        return written + size + padding(size);
+    }
+
+    /**
+     * ustarヘッダーのプレフィックスとファイル名に分割
+     *
+     * @param nameBytes エントリ名
+     * @return {プレフィックス, ファイル名} ※収まらない場合はnull
+     */
+    private static String[] splitName(byte[] nameBytes) {
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        if (nameBytes.length <= NAME_LENGTH) {
+            return new String[]{"", name};
+        }
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+            int prefixLength = name.substring(0, i).getBytes(StandardCharsets.UTF_8).length;
+            int nameLength = nameBytes.length - prefixLength - 1;
+            if (prefixLength <= PREFIX_LENGTH && nameLength <= NAME_LENGTH) {
+                return new String[]{name.substring(0, i), name.substring(i + 1)};
+            }
+        }
+        return null;
+    }
+
+    private static byte[] createHeader(String name, String prefix, long size, long mtime, byte type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, NAME_LENGTH, name);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, mtime);
+        header[156] = type;
+        putString(header, 257, 6, "ustar");
+        putString(header, 263, 2, "00");
+        putString(header, 345, PREFIX_LENGTH, prefix);
+
+        // チェックサムはチェックサム欄を空白として計算する
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private static void putString(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    /**
+     * 8進数(末尾NUL)で格納
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        StringBuilder sb = new StringBuilder();
+        for (int i = octal.length(); i < length - 1; i++) {
+            sb.append('0');
+        }
+        putString(header, offset, length - 1, sb.append(octal).toString());
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * pax拡張ヘッダーのレコードを作成 ※各レコードは「長さ キー=値\n」で、長さはレコード自身を含む
+     */
+    private static byte[] toPaxRecords(Map<String, String> records) {
+        StringBuilder sb = new StringBuilder();
+        records.forEach((key, value) -> {
+            int len = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+            int total = len + String.valueOf(len).length();
+            if (String.valueOf(total).length() != String.valueOf(len).length()) {
+                total++;
+            }
+            sb.append(total).append(' ').append(key).append('=').append(value).append('\n');
+        });
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 指定バイト数以下に切り詰める ※マルチバイト文字の途中では切らない
+     */
+    private static String truncate(byte[] nameBytes, int length) {
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        while (name.getBytes(StandardCharsets.UTF_8).length > length) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private static void writeZeros(OutputStream out, long length) throws IOException {
+        byte[] zeros = new byte[BLOCK_SIZE];
+        while (length > 0) {
+            int len = (int) Math.min(zeros.length, length);
+            out.write(zeros, 0, len);
+            length -= len;
+        }
+    }
+}
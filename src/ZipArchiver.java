@@ -0,0 +1,412 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipException;
+
+/**
+ * Zip圧縮
+ * <p>
+ * 各ファイルは固定サイズのブロックに分割し、{@link ParallelDeflater} で複数スレッドで圧縮して投入順に書き込む。
+ * 小さいファイルは複数エントリ分のブロックが、大きいファイルは1エントリ内の複数ブロックが同時に圧縮される。
+ * 未出力のブロック数には上限があるため、ファイルサイズに関わらずヒープ使用量は一定となる。
+ * 圧縮効果のないファイルは無圧縮(STORED)のエントリとして格納する。
+ * <p>
+ * 圧縮と並行した削除({@link PipelinedDeleter})では、書き込み・検証済みのエントリの元ファイルを圧縮中に削除する。
+ * 失敗・キャンセルした場合は元ファイルを削除済みのエントリまでで圧縮ファイルを完了し、
+ * 処理が中断した場合はジャーナルから復旧({@link DeleteJournal#recover})する。
+ * <p>
+ * 重複を除く場合({@link Deduplicator})、同じ内容のファイルは最初のファイルのみ圧縮し、他は一覧のエントリに記録する。
+ * 一覧は書き込む前に読み込めることを確認し、圧縮後に削除する場合は作成した圧縮ファイルから読み込めることを確認する。
+ * 追記では既存のエントリ・一覧と重複するため、重複を除く場合は追記できない。
+ * <p>
+ * 辞書で圧縮する場合({@link FamilyDictionary})、ローテーションしたログの系列毎に辞書・対応表のエントリを先に書き込み、
+ * 系列の各エントリは辞書を参照して圧縮する。先に書き込むため、途中で復旧した圧縮ファイルでも辞書は欠けない。
+ * 対応表は書き込む前に読み込めることを確認し、圧縮後に削除する場合は作成した圧縮ファイルから読み込めることを確認する。
+ * 追記では既存の対応表と重複するため、辞書で圧縮する場合は追記できない。
+ */
+class ZipArchiver extends Archiver {
+    private static final Logger LOGGER = Logger.getLogger(ZipArchiver.class.getName());
+
+    /** 元ファイルを圧縮と並行して削除するか */
+    private final boolean pipelinedDelete;
+
+    /** 同じ内容のファイルを1エントリにまとめるか */
+    private final boolean dedup;
+
+    /** ローテーションしたログの系列毎に共通の辞書で圧縮するか */
+    private final boolean dictionary;
+
+    /**
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     */
+    protected ZipArchiver(String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel) {
+        this(removeStr, bufferSize, parallelism, compressionLevel, false, false, false);
+    }
+
+    /**
+     * @param removeStr        エントリ名から除去する作業ディレクトリ
+     * @param bufferSize       読み込みバッファ(ブロック)のサイズ
+     * @param parallelism      圧縮スレッド数
+     * @param compressionLevel 圧縮レベル
+     * @param pipelinedDelete  元ファイルを圧縮と並行して削除するか
+     * @param dedup            同じ内容のファイルを1エントリにまとめるか
+     * @param dictionary       ローテーションしたログの系列毎に共通の辞書で圧縮するか
+     */
+    protected ZipArchiver(String removeStr, int bufferSize, int parallelism, CompressionLevel compressionLevel, boolean pipelinedDelete,
+            boolean dedup, boolean dictionary) {
+        super(removeStr, bufferSize, parallelism, compressionLevel);
+        this.pipelinedDelete = pipelinedDelete;
+        this.dedup = dedup;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 圧縮と並行して削除する場合は、元ファイルを全エントリの書き込み後ではなく、書き込み・同期・検証したエントリ毎に削除する。
+     * 既存の圧縮ファイルへの追記は追記前の状態に戻せなくなるため、並行して削除しない。
+     */
+    @Override public List<Path> archive(List<Path> pathList, Path zipFile, boolean append, boolean deleteOriginal, CompressProgress progress) throws IOException {
+        if (!pipelinedDelete || !deleteOriginal || (append && Files.exists(zipFile))) {
+            return super.archive(pathList, zipFile, append, deleteOriginal, progress);
+        }
+
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        int entryCount = -1;
+        try (DeleteJournal journal = DeleteJournal.create(zipFile)) {
+            try (ZipWriter writer = new ZipWriter(zipFile, Charset.defaultCharset());
+                    PipelinedDeleter deleter = new PipelinedDeleter(writer, journal)) {
+                try {
+                    Map<Path, Path> duplicates = findDuplicates(pathList, progress);
+                    Map<Path, Boolean> stored = new HashMap<>();
+                    Map<Path, FamilyDictionary> dictionaries = buildDictionaries(pathList, duplicates, stored, progress);
+                    writeEntries(writer, pathList, duplicates, stored, dictionaries, progress, deleter);
+                    deleter.finish();
+                } catch (IOException | RuntimeException e) {
+                    // 元ファイルを削除済みのエントリは残す
+                    entryCount = deleter.rollback();
+                    throw e;
+                }
+            } finally {
+                if (entryCount == 0) {
+                    Files.deleteIfExists(zipFile);
+                } else if (entryCount > 0) {
+                    LOGGER.warning("削除済みの" + entryCount + "件で圧縮ファイルを完了しました。(" + zipFile + ")");
+                }
+                // 復旧が必要なのは中断した場合のみ
+                if (entryCount >= 0) {
+                    journal.discard();
+                }
+            }
+            journal.discard();
+        }
+        metrics.record(GZipMetrics.Phase.COMPRESS, start);
+        metrics.addBytesWritten(Files.size(zipFile));
+        return Collections.singletonList(zipFile);
+    }
+
+    @Override public List<Path> archive(List<Path> pathList, Path zipFile, CompressProgress progress) throws IOException {
+        boolean completed = false;
+        try (ZipWriter writer = new ZipWriter(zipFile, Charset.defaultCharset())) {
+            Map<Path, Path> duplicates = findDuplicates(pathList, progress);
+            Map<Path, Boolean> stored = new HashMap<>();
+            Map<Path, FamilyDictionary> dictionaries = buildDictionaries(pathList, duplicates, stored, progress);
+            writeEntries(writer, pathList, duplicates, stored, dictionaries, progress, null);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(zipFile);
+            }
+        }
+        return Collections.singletonList(zipFile);
+    }
+
+    /**
+     * 辞書の対応表・重複ファイルの一覧は展開時に必要となるため、作成した圧縮ファイルから読み込めることを確認する。
+     */
+    @Override protected void checkReadable(List<Path> archiveFiles) throws IOException {
+        if (!dictionary && !dedup) {
+            return;
+        }
+        for (Path archiveFile : archiveFiles) {
+            // 対応表・辞書は開く時に読み込む
+            try (ZipExtractor extractor = new ZipExtractor(archiveFile)) {
+                extractor.getDuplicates();
+            }
+        }
+    }
+
+    /**
+     * 既存のエントリのデータは読み書きせず、既存のセントラルディレクトリの位置から新しいエントリを書き込む。
+     * 処理時間は既存の圧縮ファイルのサイズではなく、追記するファイルのサイズに比例する。
+     */
+    @Override public List<Path> append(List<Path> pathList, Path zipFile, CompressProgress progress) throws IOException {
+        if (dedup || dictionary) {
+            throw new GZipRuntimeException("重複除去・辞書圧縮では追記できません。");
+        }
+        try (ZipWriter writer = ZipWriter.append(zipFile, Charset.defaultCharset())) {
+            // 同じ名前のエントリがある場合は何も書き込まない
+            for (Path path : pathList) {
+                String entryName = getEntryName(path);
+                if (writer.containsEntry(entryName)) {
+                    throw new ZipException("同じ名前のエントリが既にあります。(" + entryName + ")");
+                }
+            }
+
+            boolean completed = false;
+            try {
+                writeEntries(writer, pathList, Collections.emptyMap(), new HashMap<>(), Collections.emptyMap(), progress, null);
+                completed = true;
+            } finally {
+                if (!completed) {
+                    writer.restore();
+                }
+            }
+        }
+        return Collections.singletonList(zipFile);
+    }
+
+    /**
+     * 同じ内容のファイルの検出
+     *
+     * @param pathList 圧縮するファイル郡
+     * @param progress 進捗
+     * @return 重複ファイル → 同じ内容の最初のファイル ※重複を除かない場合は空
+     * @throws IOException 読み込みエラー
+     */
+    private Map<Path, Path> findDuplicates(List<Path> pathList, CompressProgress progress) throws IOException {
+        if (!dedup) {
+            return Collections.emptyMap();
+        }
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        Map<Path, Path> duplicates = new Deduplicator(parallelism).findDuplicates(pathList, progress);
+        metrics.record(GZipMetrics.Phase.DEDUP, start);
+        return duplicates;
+    }
+
+    /**
+     * ローテーションしたログの系列毎の辞書の作成
+     *
+     * @param pathList   圧縮するファイル郡
+     * @param duplicates 重複ファイル → 同じ内容の最初のファイル ※エントリとしないため辞書の対象外
+     * @param stored     ファイル → 無圧縮で格納するか ※判定済みのファイルを追加する
+     * @param progress   進捗
+     * @return ファイル → 系列の辞書 ※辞書で圧縮しない場合は空
+     * @throws IOException 読み込みエラー
+     */
+    private Map<Path, FamilyDictionary> buildDictionaries(List<Path> pathList, Map<Path, Path> duplicates, Map<Path, Boolean> stored,
+            CompressProgress progress) throws IOException {
+        if (!dictionary) {
+            return Collections.emptyMap();
+        }
+        GZipMetrics metrics = GZipMetrics.get();
+        long start = System.nanoTime();
+        List<Path> candidates = new ArrayList<>();
+        for (Path path : pathList) {
+            if (!duplicates.containsKey(path) && !isStored(path, stored)) {
+                candidates.add(path);
+            }
+        }
+        Map<Path, FamilyDictionary> dictionaries = FamilyDictionary.build(candidates, progress);
+        metrics.record(GZipMetrics.Phase.DICTIONARY, start);
+        return dictionaries;
+    }
+
+    /**
+     * 無圧縮で格納するか ※圧縮レベルがautoの場合はファイルの先頭を読み込むため、ファイル毎に1回のみ判定する
+     *
+     * @param path   ファイルパス
+     * @param stored ファイル → 判定結果
+     * @return 無圧縮で格納する場合はtrue
+     * @throws IOException 読み込みエラー
+     */
+    private boolean isStored(Path path, Map<Path, Boolean> stored) throws IOException {
+        Boolean result = stored.get(path);
+        if (result == null) {
+            result = compressionLevel.shouldStore(path);
+            stored.put(path, result);
+        }
+        return result;
+    }
+
+    /**
+     * 全ファイル分のエントリの書き込み
+     *
+     * @param writer       書き込み先
+     * @param pathList     圧縮するファイル郡
+     * @param duplicates   重複ファイル → 同じ内容の最初のファイル ※重複ファイルはエントリとせず、一覧に記録する
+     * @param stored       ファイル → 無圧縮で格納するか ※未判定のファイルは書き込み時に判定して追加する
+     * @param dictionaries ファイル → 系列の辞書 ※辞書・対応表のエントリを先に書き込む
+     * @param progress     進捗
+     * @param deleter      圧縮と並行した削除 ※並行して削除しない場合はnull
+     * @throws IOException 入出力エラー
+     */
+    private void writeEntries(ZipWriter writer, List<Path> pathList, Map<Path, Path> duplicates, Map<Path, Boolean> stored,
+            Map<Path, FamilyDictionary> dictionaries, CompressProgress progress, PipelinedDeleter deleter) throws IOException {
+        try (ParallelDeflater deflater = new ParallelDeflater(parallelism, bufferSize, compressionLevel.getLevel())) {
+            if (!dictionaries.isEmpty()) {
+                writeDictionaries(writer, deflater, dictionaries);
+            }
+            for (Path path : pathList) {
+                if (duplicates.containsKey(path)) {
+                    progress.skip(Files.size(path));
+                    continue;
+                }
+                writeEntry(writer, deflater, path, isStored(path, stored), dictionaries.get(path), progress, deleter);
+            }
+            if (!duplicates.isEmpty()) {
+                writeManifest(writer, deflater, duplicates, deleter);
+            }
+            deflater.flush();
+            writer.finish();
+        }
+    }
+
+    /**
+     * 辞書・対応表のエントリを投入
+     *
+     * @param writer       書き込み先
+     * @param deflater     並列圧縮
+     * @param dictionaries ファイル → 系列の辞書
+     * @throws IOException 入出力エラー
+     */
+    private void writeDictionaries(ZipWriter writer, ParallelDeflater deflater, Map<Path, FamilyDictionary> dictionaries) throws IOException {
+        long now = System.currentTimeMillis();
+        Map<String, String> mapping = new LinkedHashMap<>();
+        Set<FamilyDictionary> written = new HashSet<>();
+        for (Map.Entry<Path, FamilyDictionary> entry : dictionaries.entrySet()) {
+            FamilyDictionary dictionary = entry.getValue();
+            if (written.add(dictionary)) {
+                byte[] data = dictionary.getData();
+                writeEntry(writer, deflater, dictionary.getEntryName(), now, data.length, false, null, new ByteArrayInputStream(data), null);
+            }
+            mapping.put(getEntryName(entry.getKey()), dictionary.getEntryName());
+        }
+        byte[] data = FamilyDictionary.toMapping(mapping);
+        // 読み込めない対応表では全エントリを展開できないため、元ファイルを削除する前に確認する
+        if (!FamilyDictionary.readMapping(new ByteArrayInputStream(data)).equals(mapping)) {
+            throw new GZipRuntimeException("辞書の対応表を作成できません。");
+        }
+        writeEntry(writer, deflater, FamilyDictionary.MAPPING_ENTRY, now, data.length, false, null, new ByteArrayInputStream(data), null);
+    }
+
+    /**
+     * 1ファイル分のエントリを投入
+     *
+     * @param writer     書き込み先
+     * @param deflater   並列圧縮
+     * @param path       ファイルパス
+     * @param stored     無圧縮で格納するか
+     * @param dictionary 系列の辞書 ※辞書なしの場合はnull
+     * @param progress   進捗
+     * @param deleter    圧縮と並行した削除 ※並行して削除しない場合はnull
+     * @throws IOException 入出力エラー
+     */
+    private void writeEntry(ZipWriter writer, ParallelDeflater deflater, Path path, boolean stored, FamilyDictionary dictionary,
+            CompressProgress progress, PipelinedDeleter deleter) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        writeEntry(writer, deflater, getEntryName(path), attrs.lastModifiedTime().toMillis(), attrs.size(), stored,
+                dictionary == null ? null : dictionary.getData(), progress.wrap(Files.newInputStream(path)),
+                deleter == null ? null : () -> deleter.written(path, attrs.size()));
+    }
+
+    /**
+     * 重複ファイルの一覧のエントリを投入 ※重複ファイルは一覧の書き込み後に並行して削除する
+     *
+     * @param writer     書き込み先
+     * @param deflater   並列圧縮
+     * @param duplicates 重複ファイル → 同じ内容の最初のファイル
+     * @param deleter    圧縮と並行した削除 ※並行して削除しない場合はnull
+     * @throws IOException 入出力エラー
+     */
+    private void writeManifest(ZipWriter writer, ParallelDeflater deflater, Map<Path, Path> duplicates, PipelinedDeleter deleter) throws IOException {
+        List<Deduplicator.Duplicate> manifest = new ArrayList<>();
+        for (Map.Entry<Path, Path> duplicate : duplicates.entrySet()) {
+            manifest.add(new Deduplicator.Duplicate(getEntryName(duplicate.getKey()), getEntryName(duplicate.getValue()),
+                    Files.getLastModifiedTime(duplicate.getKey()).toMillis()));
+        }
+        byte[] data = Deduplicator.toManifest(manifest);
+        // 読み込めない一覧では重複ファイルを復元できないため、重複ファイルを削除する前に確認する
+        if (!isSameManifest(Deduplicator.readManifest(new ByteArrayInputStream(data)), manifest)) {
+            throw new GZipRuntimeException("重複ファイルの一覧を作成できません。");
+        }
+        writeEntry(writer, deflater, Deduplicator.MANIFEST_ENTRY, System.currentTimeMillis(), data.length, false, null, new ByteArrayInputStream(data),
+                deleter == null ? null : () -> {
+                    for (Path path : duplicates.keySet()) {
+                        deleter.written(path, Files.size(path));
+                    }
+                });
+    }
+
+    private static boolean isSameManifest(List<Deduplicator.Duplicate> read, List<Deduplicator.Duplicate> written) {
+        if (read.size() != written.size()) {
+            return false;
+        }
+        for (int i = 0; i < read.size(); i++) {
+            Deduplicator.Duplicate a = read.get(i);
+            Deduplicator.Duplicate b = written.get(i);
+            if (!a.getName().equals(b.getName()) || !a.getOriginal().equals(b.getOriginal()) || a.getLastModified() != b.getLastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 1エントリを投入
+     *
+     * @param writer       書き込み先
+     * @param deflater     並列圧縮
+     * @param entryName    エントリ名
+     * @param lastModified 最終更新日時(エポックミリ秒)
+     * @param size         元データのサイズ
+     * @param stored       無圧縮で格納するか
+     * @param dictionary   先頭ブロックのプリセット辞書 ※辞書なしの場合はnull
+     * @param in           元データ ※投入後にクローズする
+     * @param written      エントリの書き込み完了後の処理 ※不要な場合はnull
+     * @throws IOException 入出力エラー
+     */
+    static void writeEntry(ZipWriter writer, ParallelDeflater deflater, String entryName, long lastModified, long size, boolean stored,
+            byte[] dictionary, InputStream in, ParallelDeflater.OrderedAction written) throws IOException {
+        boolean zip64 = size >= ZipWriter.ZIP64_THRESHOLD;
+        int method = stored ? ZipWriter.METHOD_STORED : dictionary != null ? ZipWriter.METHOD_DEFLATED_DICTIONARY : ZipWriter.METHOD_DEFLATED;
+
+        // ローカルヘッダーは前のエントリの圧縮データを出力した後に書き込む
+        deflater.enqueue(() -> writer.beginEntry(entryName, lastModified, method, zip64, dictionary));
+
+        ParallelDeflater.Sink sink = new ParallelDeflater.Sink() {
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                writer.write(b, off, len);
+            }
+
+            @Override public void finish(long crc, long size) throws IOException {
+                writer.endEntry(crc, size);
+                if (written != null) {
+                    written.run();
+                }
+            }
+        };
+        ParallelDeflater.DeflateStream stream = stored ? deflater.openStored(sink)
+                : dictionary == null ? deflater.open(sink) : deflater.open(sink, dictionary);
+        try (InputStream is = in) {
+            stream.transferFrom(is);
+        }
+        stream.close();
+    }
+}
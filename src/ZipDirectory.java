@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Zipファイルのセントラルディレクトリの読み込み
+ * <p>
+ * 終端レコード(Zip64を含む)からセントラルディレクトリを探し、エントリ毎のローカルヘッダーの位置・サイズを取得する。
+ * 圧縮データをそのまま読み込む場合(追記)や、{@link java.util.zip.ZipFile} が対応しない圧縮方式のエントリの展開に使用する。
+ */
+final class ZipDirectory {
+    /** 終端レコードの固定長部分のサイズ・Zip64終端ロケーターのサイズ */
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    /** 終端レコードのコメントの最大長 */
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    /** セントラルディレクトリの固定長部分のサイズ */
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    /** 汎用フラグ:暗号化 */
+    private static final int FLAG_ENCRYPTED = 0x0001;
+
+    /** セントラルディレクトリの1エントリ分 */
+    static final class Record {
+        private final String name;
+        private final int flag;
+        private final int method;
+        private final long dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+
+        private Record(String name, int flag, int method, long dosTime, long crc, long compressedSize, long size, long localOffset) {
+            this.name = name;
+            this.flag = flag;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /** フォルダのエントリか */
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /** 暗号化されているか */
+        boolean isEncrypted() {
+            return (flag & FLAG_ENCRYPTED) != 0;
+        }
+
+        int getMethod() {
+            return method;
+        }
+
+        /**
+         * 最終更新日時 ※MS-DOS形式の日時(2秒単位)をエポックミリ秒に変換
+         *
+         * @return エポックミリ秒
+         */
+        long getLastModified() {
+            LocalDateTime time;
+            try {
+                time = LocalDateTime.of((int) ((dosTime >> 25) & 0x7F) + 1980, (int) ((dosTime >> 21) & 0x0F), (int) ((dosTime >> 16) & 0x1F),
+                        (int) ((dosTime >> 11) & 0x1F), (int) ((dosTime >> 5) & 0x3F), (int) ((dosTime << 1) & 0x3E));
+            } catch (DateTimeException e) {
+                // 日時として不正な値は1980/01/01 00:00
+                time = LocalDateTime.of(1980, 1, 1, 0, 0);
+            }
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        long getCrc() {
+            return crc;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+    /** セントラルディレクトリの位置・エントリ数 */
+    private final long offset;
+    private final long count;
+
+    /** セントラルディレクトリ・それ以降の終端レコード */
+    private final byte[] central;
+    private final byte[] end;
+
+    /** 終端レコードのコメント */
+    private final byte[] comment;
+
+    private final List<Record> records;
+
+    private ZipDirectory(long offset, long count, byte[] central, byte[] end, byte[] comment, List<Record> records) {
+        this.offset = offset;
+        this.count = count;
+        this.central = central;
+        this.end = end;
+        this.comment = comment;
+        this.records = records;
+    }
+
+    /**
+     * セントラルディレクトリの読み込み
+     *
+     * @param channel Zipファイル
+     * @param charset エントリ名の文字コード ※UTF-8フラグのないエントリ
+     * @return セントラルディレクトリ
+     * @throws IOException 入出力エラー・Zipファイルとして読み込めない
+     */
+    static ZipDirectory read(FileChannel channel, Charset charset) throws IOException {
+        // 終端レコードはコメントの分だけ末尾から前にある
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+        int endPos = tailSize - END_SIZE;
+        while (endPos >= 0 && tail.getInt(endPos) != ZipWriter.END_SIG) {
+            endPos--;
+        }
+        if (endPos < 0) {
+            throw new ZipException("Zipファイルの終端が見つかりません。");
+        }
+        long endOffset = fileSize - tailSize + endPos;
+        long count = tail.getShort(endPos + 10) & 0xFFFF;
+        long cdSize = tail.getInt(endPos + 12) & ZipWriter.ZIP64_MAGIC;
+        long cdOffset = tail.getInt(endPos + 16) & ZipWriter.ZIP64_MAGIC;
+        int endCommentLength = Math.min(tail.getShort(endPos + 20) & 0xFFFF, tailSize - endPos - END_SIZE);
+        byte[] comment = new byte[endCommentLength];
+        System.arraycopy(tail.array(), endPos + END_SIZE, comment, 0, endCommentLength);
+
+        if (endOffset >= ZIP64_LOCATOR_SIZE) {
+            ByteBuffer locator = read(channel, endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZipWriter.ZIP64_LOCATOR_SIG) {
+                ByteBuffer zip64End = read(channel, locator.getLong(8), 56);
+                if (zip64End.getInt(0) != ZipWriter.ZIP64_END_SIG) {
+                    throw new ZipException("Zip64の終端が見つかりません。");
+                }
+                count = zip64End.getLong(32);
+                cdSize = zip64End.getLong(40);
+                cdOffset = zip64End.getLong(48);
+            }
+        }
+        if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > endOffset) {
+            throw new ZipException("セントラルディレクトリを読み込めません。");
+        }
+
+        ByteBuffer central = read(channel, cdOffset, (int) cdSize);
+        List<Record> records = new ArrayList<>();
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > cdSize || central.getInt(pos) != ZipWriter.CENTRAL_HEADER_SIG) {
+                throw new ZipException("セントラルディレクトリを読み込めません。");
+            }
+            int flag = central.getShort(pos + 8) & 0xFFFF;
+            int nameLength = central.getShort(pos + 28) & 0xFFFF;
+            int extraLength = central.getShort(pos + 30) & 0xFFFF;
+            int commentLength = central.getShort(pos + 32) & 0xFFFF;
+            Charset nameCharset = (flag & ZipWriter.FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : charset;
+            String name = new String(central.array(), pos + CENTRAL_HEADER_SIZE, nameLength, nameCharset);
+
+            long compressedSize = central.getInt(pos + 20) & ZipWriter.ZIP64_MAGIC;
+            long size = central.getInt(pos + 24) & ZipWriter.ZIP64_MAGIC;
+            long localOffset = central.getInt(pos + 42) & ZipWriter.ZIP64_MAGIC;
+
+            // Zip64拡張は上限値の項目のみ、元サイズ・圧縮後のサイズ・位置の順
+            int extraPos = pos + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extraPos + extraLength;
+            while (extraPos + 4 <= extraEnd) {
+                int id = central.getShort(extraPos) & 0xFFFF;
+                int length = central.getShort(extraPos + 2) & 0xFFFF;
+                if (id == ZipWriter.ZIP64_EXTRA_ID) {
+                    int field = extraPos + 4;
+                    if (size == ZipWriter.ZIP64_MAGIC) {
+                        size = central.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZipWriter.ZIP64_MAGIC) {
+                        compressedSize = central.getLong(field);
+                        field += 8;
+                    }
+                    if (localOffset == ZipWriter.ZIP64_MAGIC) {
+                        localOffset = central.getLong(field);
+                    }
+                }
+                extraPos += 4 + length;
+            }
+
+            records.add(new Record(name, flag, central.getShort(pos + 10) & 0xFFFF, central.getInt(pos + 12) & ZipWriter.ZIP64_MAGIC,
+                    central.getInt(pos + 16) & ZipWriter.ZIP64_MAGIC, compressedSize, size, localOffset));
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        byte[] end = read(channel, cdOffset + cdSize, (int) (fileSize - cdOffset - cdSize)).array();
+        return new ZipDirectory(cdOffset, count, central.array(), end, comment, Collections.unmodifiableList(records));
+    }
+
+    /**
+     * 圧縮データの位置の取得 ※ローカルヘッダーのエントリ名・拡張フィールドの長さはセントラルディレクトリと異なる場合がある
+     *
+     * @param channel Zipファイル
+     * @param record  エントリ
+     * @return 圧縮データの位置
+     * @throws IOException 入出力エラー・ローカルヘッダーがない
+     */
+    static long getDataOffset(FileChannel channel, Record record) throws IOException {
+        ByteBuffer header = read(channel, record.localOffset, ZipWriter.LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != ZipWriter.LOCAL_HEADER_SIG) {
+            throw new ZipException("ローカルヘッダーが見つかりません。(" + record.name + ")");
+        }
+        return record.localOffset + ZipWriter.LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    }
+
+    /**
+     * 位置を指定した読み込み ※別スレッドから同時に呼び出せる
+     *
+     * @param channel ファイル
+     * @param pos     位置
+     * @param size    バイト数
+     * @return 読み込んだデータ(リトルエンディアン)
+     * @throws IOException 入出力エラー・ファイルの終端
+     */
+    static ByteBuffer read(FileChannel channel, long pos, int size) throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, pos + dst.position()) < 0) {
+                throw new ZipException("Zipファイルが途中で終わっています。");
+            }
+        }
+        return dst;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    byte[] getCentral() {
+        return central;
+    }
+
+    byte[] getEnd() {
+        return end;
+    }
+
+    byte[] getComment() {
+        return comment;
+    }
+
+    List<Record> getRecords() {
+        return records;
+    }
+}
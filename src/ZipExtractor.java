@@ -0,0 +1,338 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * G-Zipで作成したZipファイルの展開
+ * <p>
+ * 通常のエントリに加えて、重複のためエントリとしなかったファイル({@link Deduplicator})を一覧から同じ内容のファイルのコピーとして復元する。
+ * 辞書を参照して圧縮したエントリ({@link FamilyDictionary})は独自の圧縮方式({@link ZipWriter#METHOD_DEFLATED_DICTIONARY})のため、
+ * {@link java.util.zip.ZipFile} は使用せず、セントラルディレクトリ({@link ZipDirectory})から圧縮データの位置を取得して展開する。
+ * 全エントリは展開の終端でCRC-32・サイズをセントラルディレクトリの値と比較する。
+ * 既存のファイルは上書きしない。
+ * <p>
+ * {@link #getInputStream(ZipDirectory.Record)} は複数スレッドから同時に呼び出せる。
+ */
+final class ZipExtractor implements Closeable {
+    /** 読み込みバッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    /** セントラルディレクトリのエントリ ※格納順 */
+    private final List<ZipDirectory.Record> records;
+    private final Map<String, ZipDirectory.Record> recordsByName = new HashMap<>();
+
+    /** エントリ名 → 辞書 ※辞書を参照したエントリのみ */
+    private final Map<String, byte[]> dictionaries = new HashMap<>();
+
+    /**
+     * @param zipFile 圧縮ファイル
+     * @throws IOException 入出力エラー・Zipファイルとして読み込めない・辞書を読み込めない
+     */
+    ZipExtractor(Path zipFile) throws IOException {
+        channel = FileChannel.open(zipFile, StandardOpenOption.READ);
+        try {
+            records = ZipDirectory.read(channel, Charset.defaultCharset()).getRecords();
+            for (ZipDirectory.Record record : records) {
+                recordsByName.put(record.getName(), record);
+            }
+
+            ZipDirectory.Record mapping = recordsByName.get(FamilyDictionary.MAPPING_ENTRY);
+            if (mapping != null) {
+                Map<String, byte[]> loaded = new HashMap<>();
+                for (Map.Entry<String, String> entry : FamilyDictionary.readMapping(getInputStream(mapping)).entrySet()) {
+                    if (!recordsByName.containsKey(entry.getKey())) {
+                        // 復旧した圧縮ファイルでは対応表のエントリが途中までの場合がある
+                        continue;
+                    }
+                    byte[] dictionary = loaded.get(entry.getValue());
+                    if (dictionary == null) {
+                        dictionary = readDictionary(entry.getValue());
+                        loaded.put(entry.getValue(), dictionary);
+                    }
+                    dictionaries.put(entry.getKey(), dictionary);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private byte[] readDictionary(String entryName) throws IOException {
+        ZipDirectory.Record record = recordsByName.get(entryName);
+        if (record == null) {
+            throw new ZipException("辞書のエントリがありません。(" + entryName + ")");
+        }
+        if (record.getSize() > ParallelDeflater.DICTIONARY_SIZE) {
+            throw new ZipException("辞書のサイズが上限を超えています。(" + entryName + ": " + record.getSize() + ")");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) record.getSize());
+        try (InputStream is = getInputStream(record)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = is.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 全エントリ
+     *
+     * @return セントラルディレクトリのエントリ郡 ※格納順
+     */
+    List<ZipDirectory.Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * エントリの取得
+     *
+     * @param entryName エントリ名
+     * @return セントラルディレクトリのエントリ ※ない場合はnull
+     */
+    ZipDirectory.Record getRecord(String entryName) {
+        return recordsByName.get(entryName);
+    }
+
+    /**
+     * 重複ファイルの一覧の読み込み
+     *
+     * @return 重複ファイル郡 ※一覧がない場合は空
+     * @throws IOException 読み込みエラー
+     */
+    List<Deduplicator.Duplicate> getDuplicates() throws IOException {
+        ZipDirectory.Record record = recordsByName.get(Deduplicator.MANIFEST_ENTRY);
+        return record == null ? Collections.emptyList() : Deduplicator.readManifest(getInputStream(record));
+    }
+
+    /**
+     * エントリの展開 ※辞書を参照したエントリは辞書を設定して展開する
+     *
+     * @param record エントリ
+     * @return 展開したデータ ※終端でCRC-32・サイズが一致しない場合は {@link ZipException}
+     * @throws IOException 入出力エラー・未対応の圧縮方式
+     */
+    InputStream getInputStream(ZipDirectory.Record record) throws IOException {
+        if (record.isEncrypted()) {
+            throw new ZipException("暗号化されたエントリは展開できません。(" + record.getName() + ")");
+        }
+        long dataOffset = ZipDirectory.getDataOffset(channel, record);
+        long dataEnd = dataOffset + record.getCompressedSize();
+        InputStream in;
+        switch (record.getMethod()) {
+            case ZipWriter.METHOD_STORED:
+                in = new ChannelInputStream(channel, dataOffset, dataEnd, false);
+                break;
+            case ZipWriter.METHOD_DEFLATED:
+                in = inflate(new ChannelInputStream(channel, dataOffset, dataEnd, true), null);
+                break;
+            case ZipWriter.METHOD_DEFLATED_DICTIONARY:
+                byte[] dictionary = dictionaries.get(record.getName());
+                if (dictionary == null) {
+                    throw new ZipException("辞書の対応表にないエントリです。(" + record.getName() + ")");
+                }
+                in = inflate(new ChannelInputStream(channel, dataOffset, dataEnd, true), dictionary);
+                break;
+            default:
+                throw new ZipException("未対応の圧縮方式です。(" + record.getName() + ": " + record.getMethod() + ")");
+        }
+        return new VerifyingInputStream(in, record);
+    }
+
+    /**
+     * Deflateの展開 ※クローズ時に {@link Inflater} を解放する
+     */
+    private static InputStream inflate(InputStream in, byte[] dictionary) {
+        Inflater inflater = new Inflater(true);
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            private boolean closed;
+
+            @Override public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    inflater.end();
+                    super.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * 展開
+     *
+     * @param zipFile 圧縮ファイル
+     * @param destDir 展開先フォルダ
+     * @return 展開したファイル数 ※重複ファイルを含む
+     * @throws IOException 入出力エラー・展開先に同じファイルがある
+     */
+    static int extract(Path zipFile, Path destDir) throws IOException {
+        int count = 0;
+        try (ZipExtractor extractor = new ZipExtractor(zipFile)) {
+            for (ZipDirectory.Record record : extractor.getRecords()) {
+                if (record.isDirectory() || isMetadata(record.getName())) {
+                    continue;
+                }
+                Path file = resolve(destDir, record.getName());
+                Files.createDirectories(file.getParent());
+                try (InputStream is = extractor.getInputStream(record)) {
+                    Files.copy(is, file);
+                } catch (ZipException e) {
+                    // CRC-32・サイズが一致しないファイルは残さない
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+                Files.setLastModifiedTime(file, FileTime.fromMillis(record.getLastModified()));
+                count++;
+            }
+
+            // 重複ファイルは格納したエントリを展開したファイルのコピー
+            for (Deduplicator.Duplicate duplicate : extractor.getDuplicates()) {
+                Path file = resolve(destDir, duplicate.getName());
+                Files.createDirectories(file.getParent());
+                Files.copy(resolve(destDir, duplicate.getOriginal()), file, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.setLastModifiedTime(file, FileTime.fromMillis(duplicate.getLastModified()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * G-Zipが格納したエントリか ※展開しない
+     */
+    private static boolean isMetadata(String entryName) {
+        return Deduplicator.MANIFEST_ENTRY.equals(entryName) || FamilyDictionary.MAPPING_ENTRY.equals(entryName)
+                || entryName.startsWith(FamilyDictionary.ENTRY_PREFIX);
+    }
+
+    /**
+     * 展開先のパスの取得 ※展開先フォルダの外を指すエントリ名は展開しない
+     */
+    private static Path resolve(Path destDir, String entryName) throws ZipException {
+        Path base = destDir.toAbsolutePath().normalize();
+        Path file = base.resolve(entryName).normalize();
+        if (!file.startsWith(base) || file.equals(base)) {
+            throw new ZipException("展開先フォルダの外を指すエントリです。(" + entryName + ")");
+        }
+        return file;
+    }
+
+    @Override public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 展開したデータの確認 ※終端でCRC-32・サイズをセントラルディレクトリの値と比較する
+     */
+    private static final class VerifyingInputStream extends FilterInputStream {
+        private final ZipDirectory.Record record;
+        private final CRC32 crc = new CRC32();
+        private long size;
+
+        private VerifyingInputStream(InputStream in, ZipDirectory.Record record) {
+            super(in);
+            this.record = record;
+        }
+
+        @Override public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                crc.update(b, off, n);
+                size += n;
+            } else if (n < 0) {
+                if (size != record.getSize()) {
+                    throw new ZipException("サイズが一致しません。(" + record.getName() + ": " + size + " / " + record.getSize() + ")");
+                }
+                if (crc.getValue() != record.getCrc()) {
+                    throw new ZipException("CRC-32が一致しません。(" + record.getName() + ")");
+                }
+            }
+            return n;
+        }
+
+        @Override public long skip(long n) throws IOException {
+            // 読み飛ばした分もCRC-32を計算する
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int skipped = read(buffer, 0, buffer.length);
+            return Math.max(skipped, 0);
+        }
+
+        @Override public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * 圧縮データの読み込み ※位置指定のため、同じチャネルを複数スレッドで共有できる
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long pos;
+
+        /** 終端の後のダミーの1バイト ※nowrapの {@link Inflater} は終端の判定に余分な入力を必要とする場合がある */
+        private boolean dummy;
+
+        private ChannelInputStream(FileChannel channel, long pos, long end, boolean dummy) {
+            this.channel = channel;
+            this.pos = pos;
+            this.end = end;
+            this.dummy = dummy;
+        }
+
+        @Override public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= end) {
+                if (!dummy) {
+                    return -1;
+                }
+                dummy = false;
+                b[off] = 0;
+                return 1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos)), pos);
+            if (n < 0) {
+                throw new ZipException("Zipファイルが途中で終わっています。");
+            }
+            pos += n;
+            return n;
+        }
+    }
+}
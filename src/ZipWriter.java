@@ -0,0 +1,679 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Zipファイル書き込み
+ * <p>
+ * {@link java.util.zip.ZipOutputStream} と異なり、別スレッドで圧縮済みのデータをそのまま書き込める。
+ * ローカルヘッダーのCRC・サイズはエントリ終了時に書き戻すため、データディスクリプタは使用しない。
+ * <p>
+ * 既存のZipファイルへの追記({@link #append(Path, Charset)})では、既存のエントリのデータはそのままとし、
+ * 既存のセントラルディレクトリの位置から新しいエントリを書き込んで、セントラルディレクトリのみ書き直す。
+ * 失敗した場合は {@link #restore()} で追記前のセントラルディレクトリを書き戻す。
+ */
+class ZipWriter implements Closeable {
+    /** 圧縮方式:無圧縮 */
+    static final int METHOD_STORED = 0;
+
+    /** 圧縮方式:Deflate */
+    static final int METHOD_DEFLATED = 8;
+
+    /**
+     * 圧縮方式:プリセット辞書付きのDeflate ※G-Zip独自(APPNOTEに未登録の番号)。
+     * 辞書なしでは展開できないため、標準のDeflateとは区別し、他のツールでは未対応の圧縮方式として扱われる
+     */
+    static final int METHOD_DEFLATED_DICTIONARY = 0x4744;
+
+    /** ローカルヘッダーにZip64拡張を付ける閾値 ※圧縮後のサイズが元より大きくなっても収まるよう余裕を持たせる */
+    static final long ZIP64_THRESHOLD = 0x80000000L;
+
+    static final int LOCAL_HEADER_SIG = 0x04034b50;
+    static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    static final int ZIP64_END_SIG = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    static final int END_SIG = 0x06054b50;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    /** 汎用フラグ:ファイル名がUTF-8 */
+    static final int FLAG_UTF8 = 0x0800;
+
+    /** ローカルヘッダーのCRCの位置 */
+    private static final int LOCAL_CRC_OFFSET = 14;
+
+    /** ローカルヘッダーの固定長部分のサイズ */
+    static final int LOCAL_HEADER_SIZE = 30;
+
+    /** 書き込みバッファのサイズ */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 書き込み済みのエントリ ※検証用。書き込みスレッド以外から参照するため不変
+     */
+    static final class WrittenEntry {
+        private final String name;
+        private final int method;
+        private final long offset;
+        private final long dataOffset;
+        private final long compressedSize;
+        private final long crc;
+        private final long size;
+        private final byte[] dictionary;
+
+        private WrittenEntry(Entry entry, Charset charset) {
+            this.name = new String(entry.name, charset);
+            this.method = entry.method;
+            this.offset = entry.offset;
+            this.dataOffset = entry.getDataOffset();
+            this.compressedSize = entry.compressedSize;
+            this.crc = entry.crc;
+            this.size = entry.size;
+            this.dictionary = entry.dictionary;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    /** セントラルディレクトリの1エントリ分 */
+    private static class Entry {
+        private final byte[] name;
+        private final int method;
+        private final long dosTime;
+        private final long offset;
+        private final boolean zip64Local;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        /** 圧縮時のプリセット辞書 ※セントラルディレクトリには書き込まない */
+        private byte[] dictionary;
+
+        private Entry(byte[] name, int method, long dosTime, long offset, boolean zip64Local) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.offset = offset;
+            this.zip64Local = zip64Local;
+        }
+
+        private boolean isZip64() {
+            return zip64Local || compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC || offset >= ZIP64_MAGIC;
+        }
+
+        private long getDataOffset() {
+            return offset + LOCAL_HEADER_SIZE + name.length + (zip64Local ? 20 : 0);
+        }
+    }
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final int flags;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** 書き込み位置 ※バッファ内の未出力分を含む */
+    private long position;
+
+    /** 書き込み中のエントリ */
+    private Entry current;
+
+    /** 書き込み中のエントリのデータ開始位置 */
+    private long dataStart;
+
+    /** 追記:既存のセントラルディレクトリ(そのまま書き戻す)・エントリ数・エントリ名 */
+    private byte[] existingCentral = new byte[0];
+    private long existingCount;
+    private final Set<String> existingNames = new HashSet<>();
+
+    /** 追記:追記前のセントラルディレクトリの位置・セントラルディレクトリ以降の終端レコード ※失敗時に書き戻す */
+    private long appendOffset = -1;
+    private byte[] existingEnd;
+
+    /** 追記:終端レコードのコメント ※完了時に引き継ぐ */
+    private byte[] comment = new byte[0];
+
+    /**
+     * @param zipFile 圧縮ファイル
+     * @param charset エントリ名の文字コード
+     * @throws IOException 入出力エラー
+     */
+    protected ZipWriter(Path zipFile, Charset charset) throws IOException {
+        // 書き込み済みのエントリの検証で読み込む
+        this(FileChannel.open(zipFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), charset);
+    }
+
+    private ZipWriter(FileChannel channel, Charset charset) {
+        this.channel = channel;
+        this.charset = charset;
+        this.flags = StandardCharsets.UTF_8.equals(charset) ? FLAG_UTF8 : 0;
+    }
+
+    /**
+     * 既存のZipファイルへの追記を開始
+     *
+     * @param zipFile 既存の圧縮ファイル
+     * @param charset エントリ名の文字コード
+     * @return 書き込み位置が既存のセントラルディレクトリの位置の書き込み
+     * @throws IOException 入出力エラー・Zipファイルとして読み込めない
+     */
+    static ZipWriter append(Path zipFile, Charset charset) throws IOException {
+        FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ZipWriter writer = new ZipWriter(channel, charset);
+            writer.readCentralDirectory();
+            return writer;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 既存のセントラルディレクトリの読み込み ※書き込み位置をセントラルディレクトリの位置にする
+     *
+     * @throws IOException 入出力エラー・Zipファイルとして読み込めない
+     */
+    private void readCentralDirectory() throws IOException {
+        ZipDirectory directory = ZipDirectory.read(channel, charset);
+        // エントリ名 ※重複の確認用
+        for (ZipDirectory.Record record : directory.getRecords()) {
+            existingNames.add(record.getName());
+        }
+        existingCentral = directory.getCentral();
+        existingCount = directory.getCount();
+        existingEnd = directory.getEnd();
+        comment = directory.getComment();
+        appendOffset = directory.getOffset();
+        position = appendOffset;
+        channel.position(appendOffset);
+    }
+
+    private ByteBuffer read(long pos, int size) throws IOException {
+        return ZipDirectory.read(channel, pos, size);
+    }
+
+    /**
+     * 追記先に同じ名前のエントリがあるか
+     *
+     * @param name エントリ名
+     * @return 既存のエントリにある場合はtrue
+     */
+    public boolean containsEntry(String name) {
+        return existingNames.contains(name);
+    }
+
+    /**
+     * 追記前の状態に戻す ※既存のセントラルディレクトリ・終端レコードを書き戻し、追記したデータを切り詰める
+     *
+     * @throws IOException 入出力エラー
+     */
+    public void restore() throws IOException {
+        if (appendOffset < 0) {
+            return;
+        }
+        buffer.clear();
+        writeFully(ByteBuffer.wrap(existingCentral), appendOffset);
+        writeFully(ByteBuffer.wrap(existingEnd), appendOffset + existingCentral.length);
+        channel.truncate(appendOffset + existingCentral.length + existingEnd.length);
+    }
+
+    /**
+     * エントリの開始 ※ローカルヘッダーを書き込む
+     *
+     * @param name         エントリ名
+     * @param lastModified 最終更新日時(エポックミリ秒)
+     * @param method       圧縮方式
+     * @param zip64        ローカルヘッダーにZip64拡張を付けるか ※元ファイルのサイズが {@link #ZIP64_THRESHOLD} 以上の場合
+     * @throws IOException 入出力エラー
+     */
+    public void beginEntry(String name, long lastModified, int method, boolean zip64) throws IOException {
+        beginEntry(name, lastModified, method, zip64, null);
+    }
+
+    /**
+     * 辞書付きのエントリの開始 ※ローカルヘッダーを書き込む。辞書は書き込み済みのエントリの検証で使用する
+     *
+     * @param name         エントリ名
+     * @param lastModified 最終更新日時(エポックミリ秒)
+     * @param method       圧縮方式
+     * @param zip64        ローカルヘッダーにZip64拡張を付けるか ※元ファイルのサイズが {@link #ZIP64_THRESHOLD} 以上の場合
+     * @param dictionary   圧縮時のプリセット辞書 ※辞書なしの場合はnull
+     * @throws IOException 入出力エラー
+     */
+    public void beginEntry(String name, long lastModified, int method, boolean zip64, byte[] dictionary) throws IOException {
+        if (current != null) {
+            throw new GZipRuntimeException("前のエントリが終了していません。(" + new String(current.name, charset) + ")");
+        }
+        current = new Entry(name.getBytes(charset), method, toDosTime(lastModified), position, zip64);
+        current.dictionary = dictionary;
+
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + current.name.length + (zip64 ? 20 : 0)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIG);
+        header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+        header.putShort((short) flags);
+        header.putShort((short) method);
+        header.putInt((int) current.dosTime);
+        // CRC・サイズはエントリ終了時に書き戻す
+        header.putInt(0);
+        header.putInt(zip64 ? (int) ZIP64_MAGIC : 0);
+        header.putInt(zip64 ? (int) ZIP64_MAGIC : 0);
+        header.putShort((short) current.name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(current.name);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        write(header.array(), 0, header.position());
+        dataStart = position;
+    }
+
+    /**
+     * エントリのデータを書き込む ※圧縮方式に応じて圧縮済みのデータ
+     *
+     * @param b   データ
+     * @param off 開始位置
+     * @param len 長さ
+     * @throws IOException 入出力エラー
+     */
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buffer.remaining()) {
+            flushBuffer();
+            if (len > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(b, off, len));
+                position += len;
+                return;
+            }
+        }
+        buffer.put(b, off, len);
+        position += len;
+    }
+
+    /**
+     * エントリの終了 ※ローカルヘッダーにCRC・サイズを書き戻す
+     *
+     * @param crc  元データのCRC-32
+     * @param size 元データのサイズ
+     * @throws IOException 入出力エラー
+     */
+    public void endEntry(long crc, long size) throws IOException {
+        Entry entry = current;
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = position - dataStart;
+        if (!entry.zip64Local && (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC)) {
+            throw new ZipException("圧縮中にファイルサイズが上限を超えました。(" + new String(entry.name, charset) + ")");
+        }
+        current = null;
+
+        flushBuffer();
+        ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int) crc);
+        if (entry.zip64Local) {
+            patch.flip();
+            writeFully(patch, entry.offset + LOCAL_CRC_OFFSET);
+
+            ByteBuffer extra = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            extra.putLong(entry.size);
+            extra.putLong(entry.compressedSize);
+            extra.flip();
+            writeFully(extra, entry.offset + LOCAL_HEADER_SIZE + entry.name.length + 4);
+        } else {
+            patch.putInt((int) entry.compressedSize);
+            patch.putInt((int) entry.size);
+            patch.flip();
+            writeFully(patch, entry.offset + LOCAL_CRC_OFFSET);
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * 最後に書き込んだエントリの取得
+     *
+     * @return 書き込み済みのエントリ
+     */
+    public WrittenEntry getLastEntry() {
+        return new WrittenEntry(entries.get(entries.size() - 1), charset);
+    }
+
+    /**
+     * 書き込み済みのデータをディスクに同期 ※エントリの区切りで呼び出すと、その位置までのエントリは {@link #recover} で復旧できる
+     *
+     * @throws IOException 入出力エラー
+     */
+    public void sync() throws IOException {
+        flushBuffer();
+        channel.force(false);
+    }
+
+    /**
+     * 書き込み済みのエントリの検証 ※ディスク上のローカルヘッダー・データを読み込み、展開したデータのCRC-32・サイズを比較する。
+     * 読み込みは位置指定のため、書き込み中でも別スレッドから呼び出せる
+     *
+     * @param entry 書き込み済みのエントリ ※{@link #sync()} 済みであること
+     * @throws IOException 入出力エラー・不一致
+     */
+    public void verify(WrittenEntry entry) throws IOException {
+        ByteBuffer header = read(entry.offset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIG || (header.getInt(LOCAL_CRC_OFFSET) & ZIP64_MAGIC) != entry.crc) {
+            throw new ZipException("ローカルヘッダーが一致しません。(" + entry.name + ")");
+        }
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Inflater inflater = entry.method != METHOD_STORED ? new Inflater(true) : null;
+        try {
+            if (inflater != null && entry.dictionary != null) {
+                inflater.setDictionary(entry.dictionary);
+            }
+            byte[] output = new byte[BUFFER_SIZE];
+            long pos = entry.dataOffset;
+            long end = entry.dataOffset + entry.compressedSize;
+            while (pos < end) {
+                ByteBuffer input = read(pos, (int) Math.min(BUFFER_SIZE, end - pos));
+                pos += input.capacity();
+                if (inflater == null) {
+                    crc.update(input.array(), 0, input.capacity());
+                    size += input.capacity();
+                    continue;
+                }
+                inflater.setInput(input.array(), 0, input.capacity());
+                int n;
+                while ((n = inflater.inflate(output)) > 0) {
+                    crc.update(output, 0, n);
+                    size += n;
+                }
+            }
+            if (inflater != null && !inflater.finished()) {
+                throw new ZipException("圧縮データが途中で終わっています。(" + entry.name + ")");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("圧縮データが壊れています。(" + entry.name + ": " + e.getMessage() + ")");
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+        if (crc.getValue() != entry.crc || size != entry.size) {
+            throw new ZipException("書き込んだデータが一致しません。(" + entry.name + ")");
+        }
+    }
+
+    /**
+     * 書き込み位置を前のエントリの区切りに戻す ※失敗したエントリを除いて {@link #finish()} する場合
+     *
+     * @param entryCount エントリ数
+     * @param offset     そのエントリ数の時点の書き込み位置
+     * @throws IOException 入出力エラー
+     */
+    public void rewind(int entryCount, long offset) throws IOException {
+        flushBuffer();
+        entries.subList(entryCount, entries.size()).clear();
+        current = null;
+        position = offset;
+        channel.position(offset);
+    }
+
+    /**
+     * 最後のエントリを別のZipファイルへ移動 ※ローカルヘッダー・圧縮データをそのまま複写し、このZipファイルからは除く
+     *
+     * @param dest 移動先 ※書き込み中のエントリがないこと
+     * @throws IOException 入出力エラー
+     */
+    public void moveLastEntry(ZipWriter dest) throws IOException {
+        if (current != null || dest.current != null) {
+            throw new GZipRuntimeException("エントリが終了していません。");
+        }
+        flushBuffer();
+        dest.flushBuffer();
+        Entry entry = entries.remove(entries.size() - 1);
+        long end = entry.getDataOffset() + entry.compressedSize;
+
+        // ローカルヘッダーには位置を含まないため、そのまま複写できる
+        Entry moved = new Entry(entry.name, entry.method, entry.dosTime, dest.position, entry.zip64Local);
+        moved.crc = entry.crc;
+        moved.compressedSize = entry.compressedSize;
+        moved.size = entry.size;
+        moved.dictionary = entry.dictionary;
+        long pos = entry.offset;
+        while (pos < end) {
+            pos += channel.transferTo(pos, end - pos, dest.channel);
+        }
+        dest.position += end - entry.offset;
+        dest.entries.add(moved);
+
+        position = entry.offset;
+        channel.position(entry.offset);
+    }
+
+    /**
+     * 中断したZipファイルの復旧 ※指定位置までのローカルヘッダーからセントラルディレクトリを作り直す
+     *
+     * @param zipFile 圧縮ファイル
+     * @param offset  {@link #sync()} した時点の書き込み位置
+     * @param charset エントリ名の文字コード
+     * @return 復旧したエントリ数
+     * @throws IOException 入出力エラー・ローカルヘッダーを読み込めない
+     */
+    static int recover(Path zipFile, long offset, Charset charset) throws IOException {
+        try (ZipWriter writer = new ZipWriter(FileChannel.open(zipFile, StandardOpenOption.READ, StandardOpenOption.WRITE), charset)) {
+            long pos = 0;
+            while (pos + LOCAL_HEADER_SIZE <= offset) {
+                ByteBuffer header = writer.read(pos, LOCAL_HEADER_SIZE);
+                if (header.getInt(0) != LOCAL_HEADER_SIG) {
+                    // 完了後のセントラルディレクトリ
+                    break;
+                }
+                int nameLength = header.getShort(26) & 0xFFFF;
+                int extraLength = header.getShort(28) & 0xFFFF;
+                ByteBuffer variable = writer.read(pos + LOCAL_HEADER_SIZE, nameLength + extraLength);
+                byte[] name = new byte[nameLength];
+                System.arraycopy(variable.array(), 0, name, 0, nameLength);
+                boolean zip64 = extraLength >= 20 && variable.getShort(nameLength) == ZIP64_EXTRA_ID;
+
+                Entry entry = new Entry(name, header.getShort(8) & 0xFFFF, header.getInt(10) & ZIP64_MAGIC, pos, zip64);
+                entry.crc = header.getInt(LOCAL_CRC_OFFSET) & ZIP64_MAGIC;
+                entry.compressedSize = zip64 ? variable.getLong(nameLength + 12) : header.getInt(18) & ZIP64_MAGIC;
+                entry.size = zip64 ? variable.getLong(nameLength + 4) : header.getInt(22) & ZIP64_MAGIC;
+                long next = entry.getDataOffset() + entry.compressedSize;
+                if (next > offset) {
+                    throw new ZipException("ローカルヘッダーが同期位置を超えています。(" + new String(name, charset) + ")");
+                }
+                writer.entries.add(entry);
+                pos = next;
+            }
+            writer.position = pos;
+            writer.channel.position(pos);
+            writer.finish();
+            writer.channel.force(false);
+            return writer.entries.size();
+        }
+    }
+
+    /**
+     * 書き込み済みのエントリ数
+     *
+     * @return エントリ数
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * 書き込み位置
+     *
+     * @return 先頭からのバイト数
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * セントラルディレクトリを書き込んで完了する
+     *
+     * @throws IOException 入出力エラー
+     */
+    public void finish() throws IOException {
+        if (current != null) {
+            throw new GZipRuntimeException("エントリが終了していません。(" + new String(current.name, charset) + ")");
+        }
+        long cdOffset = position;
+
+        // 追記の場合、既存のエントリは元のセントラルディレクトリのまま
+        write(existingCentral, 0, existingCentral.length);
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long cdSize = position - cdOffset;
+        writeEnd(existingCount + entries.size(), cdOffset, cdSize);
+        flushBuffer();
+
+        // 追記前の終端レコードより短くなった場合の残り
+        channel.truncate(position);
+    }
+
+    @Override public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean zip64 = entry.isZip64();
+        boolean zip64Size = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC || entry.zip64Local;
+        boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+        int extraLen = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+        if (extraLen > 0) {
+            extraLen += 4;
+        }
+        int version = zip64 ? VERSION_ZIP64 : VERSION_DEFAULT;
+
+        ByteBuffer header = ByteBuffer.allocate(46 + entry.name.length + extraLen).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(CENTRAL_HEADER_SIG);
+        header.putShort((short) version);
+        header.putShort((short) version);
+        header.putShort((short) flags);
+        header.putShort((short) entry.method);
+        header.putInt((int) entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.compressedSize));
+        header.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) extraLen);
+        // コメント長・ディスク番号・内部属性・外部属性
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry.offset));
+        header.put(entry.name);
+        if (extraLen > 0) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) (extraLen - 4));
+            if (zip64Size) {
+                header.putLong(entry.size);
+                header.putLong(entry.compressedSize);
+            }
+            if (zip64Offset) {
+                header.putLong(entry.offset);
+            }
+        }
+        write(header.array(), 0, header.position());
+    }
+
+    private void writeEnd(long count, long cdOffset, long cdSize) throws IOException {
+        boolean zip64 = count >= ZIP64_MAGIC_COUNT || cdOffset >= ZIP64_MAGIC || cdSize >= ZIP64_MAGIC;
+
+        ByteBuffer end = ByteBuffer.allocate(56 + 20 + 22 + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+        if (zip64) {
+            long zip64EndOffset = position;
+            end.putInt(ZIP64_END_SIG);
+            end.putLong(44);
+            end.putShort((short) VERSION_ZIP64);
+            end.putShort((short) VERSION_ZIP64);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(count);
+            end.putLong(count);
+            end.putLong(cdSize);
+            end.putLong(cdOffset);
+
+            end.putInt(ZIP64_LOCATOR_SIG);
+            end.putInt(0);
+            end.putLong(zip64EndOffset);
+            end.putInt(1);
+        }
+        end.putInt(END_SIG);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        end.putInt((int) Math.min(cdSize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(cdOffset, ZIP64_MAGIC));
+        end.putShort((short) comment.length);
+        end.put(comment);
+        write(end.array(), 0, end.position());
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    private void writeFully(ByteBuffer src, long pos) throws IOException {
+        while (src.hasRemaining()) {
+            pos += channel.write(src, pos);
+        }
+    }
+
+    /**
+     * MS-DOS形式の日時に変換
+     *
+     * @param millis エポックミリ秒
+     * @return MS-DOS形式の日時
+     */
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        int year = time.getYear();
+        if (year < 1980) {
+            // 1980/01/01 00:00
+            return (1 << 21) | (1 << 16);
+        }
+        if (year > 2107) {
+            // 2107/12/31 23:59:58
+            return (127L << 25) | (12 << 21) | (31 << 16) | (23 << 11) | (59 << 5) | 29;
+        }
+        return ((long) (year - 1980) << 25) | (time.getMonthValue() << 21) | (time.getDayOfMonth() << 16)
+                | (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+    }
+}